@@ -91,14 +91,28 @@ public class DataInitializer implements CommandLineRunner {
     
     @Transactional
     Privilege createPrivilegeIfNotFound(String name, String description, String resourceType, String actionType) {
-        return privilegeRepository.findByName(name).orElseGet(() -> {
-            Privilege privilege = new Privilege();
-            privilege.setName(name);
-            privilege.setDescription(description);
-            privilege.setResourceType(resourceType);
-            privilege.setActionType(actionType);
-            return privilegeRepository.save(privilege);
-        });
+        Privilege existing = privilegeRepository.findByName(name).orElse(null);
+        if (existing != null) {
+            // Privileges created before bit indexes existed get the next free one
+            if (existing.getBitIndex() == null) {
+                existing.setBitIndex(nextBitIndex());
+                return privilegeRepository.save(existing);
+            }
+            return existing;
+        }
+        
+        Privilege privilege = new Privilege();
+        privilege.setName(name);
+        privilege.setDescription(description);
+        privilege.setResourceType(resourceType);
+        privilege.setActionType(actionType);
+        privilege.setBitIndex(nextBitIndex());
+        return privilegeRepository.save(privilege);
+    }
+    
+    private int nextBitIndex() {
+        Integer max = privilegeRepository.findMaxBitIndex();
+        return max == null ? 0 : max + 1;
     }
     
     @Transactional
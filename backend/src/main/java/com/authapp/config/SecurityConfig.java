@@ -1,11 +1,19 @@
 package com.authapp.config;
 
+import com.authapp.security.OffloadingPasswordEncoder;
+import com.authapp.security.PasswordHashPolicy;
+import com.authapp.security.PrivilegePermissionEvaluator;
 import com.authapp.security.jwt.JwtAuthenticationFilter;
+import com.authapp.security.ratelimit.LoginRateLimitFilter;
 import com.authapp.service.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -13,18 +21,19 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.ldap.authentication.BindAuthenticator;
 import org.springframework.security.ldap.authentication.LdapAuthenticationProvider;
 import org.springframework.security.ldap.search.FilterBasedLdapUserSearch;
 import org.springframework.security.ldap.userdetails.DefaultLdapAuthoritiesPopulator;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.util.Arrays;
 
 @Configuration
@@ -38,12 +47,58 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
     
+    @Autowired
+    private LoginRateLimitFilter loginRateLimitFilter;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
     @Value("${app.ldap.enabled:false}")
     private boolean ldapEnabled;
     
+    @Value("${app.security.password-hashing.threads:0}")
+    private int hashingThreads;
+    
+    @Value("${app.security.password-hashing.queue-capacity:256}")
+    private int hashingQueueCapacity;
+    
+    @Value("${app.security.password-hashing.timeout-ms:5000}")
+    private long hashingTimeoutMillis;
+    
+    @Value("${app.security.password-hashing.bcrypt-cost:0}")
+    private int bcryptCost;
+    
+    @Value("${app.security.password-hashing.budget-ms:250}")
+    private long hashingBudgetMillis;
+    
+    @Value("${app.security.password-hashing.min-cost:10}")
+    private int minBcryptCost;
+    
+    @Value("${app.security.password-hashing.max-cost:14}")
+    private int maxBcryptCost;
+    
+    // A fixed cost wins; otherwise the cost is fitted to this host's hashing speed
     @Bean
+    public PasswordHashPolicy passwordHashPolicy() {
+        if (bcryptCost > 0) {
+            return new PasswordHashPolicy(bcryptCost);
+        }
+        return PasswordHashPolicy.calibrate(Duration.ofMillis(hashingBudgetMillis), minBcryptCost, maxBcryptCost);
+    }
+    
+    // BCrypt runs on its own CPU-sized pool so request threads cannot oversubscribe the CPU
+    @Bean(destroyMethod = "shutdown")
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new OffloadingPasswordEncoder(passwordHashPolicy().createEncoder(), meterRegistry,
+                hashingThreads, hashingQueueCapacity, Duration.ofMillis(hashingTimeoutMillis));
+    }
+    
+    // Static so the method security infrastructure can use it before this configuration is created
+    @Bean
+    static MethodSecurityExpressionHandler methodSecurityExpressionHandler(PrivilegePermissionEvaluator permissionEvaluator) {
+        DefaultMethodSecurityExpressionHandler handler = new DefaultMethodSecurityExpressionHandler();
+        handler.setPermissionEvaluator(permissionEvaluator);
+        return handler;
     }
     
     @Bean
@@ -71,14 +126,23 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            // Answer missing or expired tokens with 401 so clients know to refresh
+            .exceptionHandling(exceptions -> exceptions
+                .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/auth/**").permitAll()
+                .requestMatchers("/api/v2/auth/**").permitAll()
                 .requestMatchers("/h2-console/**").permitAll()
                 .requestMatchers("/api/public/**").permitAll()
+                .requestMatchers("/.well-known/jwks.json").permitAll()
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .authenticationProvider(authenticationProvider())
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            // Throttle logins before any credential or token work is done
+            .addFilterBefore(loginRateLimitFilter, JwtAuthenticationFilter.class);
         
         // For H2 console
         http.headers(headers -> headers.frameOptions(frame -> frame.disable()));
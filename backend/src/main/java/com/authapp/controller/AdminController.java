@@ -0,0 +1,70 @@
+package com.authapp.controller;
+
+import com.authapp.repository.UserRepository;
+import com.authapp.security.PasswordHashPolicy;
+import com.authapp.service.IpReputationSketch;
+import com.authapp.service.LoginAttemptCounters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminController {
+    
+    @Autowired
+    private LoginAttemptCounters attemptCounters;
+    
+    @Autowired
+    private IpReputationSketch ipReputationSketch;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private PasswordHashPolicy passwordHashPolicy;
+    
+    /**
+     * IP addresses with the most failed logins in the fraud detection window. Counts are sketch
+     * estimates and may be slightly high.
+     */
+    @GetMapping("/security/top-ips")
+    public ResponseEntity<List<IpReputationSketch.IpFailureCount>> topIps(@RequestParam(defaultValue = "20") int limit) {
+        int boundedLimit = Math.max(1, Math.min(limit, ipReputationSketch.getTopK()));
+        return ResponseEntity.ok(attemptCounters.topFailingIps(boundedLimit));
+    }
+    
+    /**
+     * Number of users whose stored password hash is at each algorithm and cost, next to the cost
+     * this node hashes with. Hashes that are not {@code current}, i.e. outside the accepted cost
+     * range, are replaced on the user's next login.
+     */
+    @GetMapping("/security/password-hashes")
+    public ResponseEntity<PasswordHashReport> passwordHashes() {
+        Map<PasswordHashPolicy.HashCost, Long> users = new LinkedHashMap<>();
+        for (UserRepository.HashPrefixCount row : userRepository.countByHashPrefix()) {
+            users.merge(PasswordHashPolicy.describe(row.getPrefix()), row.getUsers(), Long::sum);
+        }
+        
+        List<HashCostCount> counts = new ArrayList<>(users.size());
+        users.forEach((hashCost, count) -> counts.add(new HashCostCount(hashCost.algorithm(), hashCost.cost(), count,
+                passwordHashPolicy.isAccepted(hashCost))));
+        counts.sort(Comparator.comparing(HashCostCount::algorithm).thenComparingInt(HashCostCount::cost));
+        return ResponseEntity.ok(new PasswordHashReport(PasswordHashPolicy.BCRYPT, passwordHashPolicy.getBcryptCost(),
+                counts));
+    }
+    
+    public record PasswordHashReport(String algorithm, int cost, List<HashCostCount> hashes) {
+    }
+    
+    public record HashCostCount(String algorithm, int cost, long users, boolean current) {
+    }
+}
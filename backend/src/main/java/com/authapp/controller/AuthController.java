@@ -3,11 +3,18 @@ package com.authapp.controller;
 import com.authapp.dto.*;
 import com.authapp.model.User;
 import com.authapp.repository.UserRepository;
+import com.authapp.security.TwoFactorChallengeTokens;
+import com.authapp.security.jwt.JwtUtils;
+import com.authapp.security.ratelimit.ServiceOverloadedException;
 import com.authapp.service.AuthenticationService;
+import com.authapp.service.RefreshTokenService;
 import com.authapp.service.TwoFactorAuthService;
+import com.authapp.util.ClientIpResolver;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
@@ -23,18 +30,31 @@ public class AuthController {
     @Autowired
     private TwoFactorAuthService twoFactorAuthService;
     
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+    
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private JwtUtils jwtUtils;
+    
+    @Autowired
+    private TwoFactorChallengeTokens twoFactorChallengeTokens;
+    
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
                                               HttpServletRequest request) {
         try {
-            String ipAddress = getClientIpAddress(request);
+            String ipAddress = ClientIpResolver.resolve(request);
             String userAgent = request.getHeader("User-Agent");
             
             LoginResponse response = authenticationService.authenticate(loginRequest, ipAddress, userAgent);
             return ResponseEntity.ok(response);
+        } catch (ServiceOverloadedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -45,13 +65,39 @@ public class AuthController {
         try {
             authenticationService.register(registerRequest);
             return ResponseEntity.ok("User registered successfully");
+        } catch (ServiceOverloadedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
     
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@RequestBody RefreshTokenRequest refreshRequest) {
+        try {
+            if (refreshRequest.getRefreshToken() == null || refreshRequest.getRefreshToken().isEmpty()) {
+                return ResponseEntity.badRequest().body("Refresh token is required");
+            }
+            
+            TokenRefreshResponse response = refreshTokenService.rotate(refreshRequest.getRefreshToken());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
+        }
+    }
+    
     @PostMapping("/logout")
-    public ResponseEntity<?> logoutUser() {
+    public ResponseEntity<?> logoutUser(@RequestBody(required = false) RefreshTokenRequest logoutRequest,
+                                        HttpServletRequest request) {
+        String token = jwtUtils.extractBearerToken(request.getHeader("Authorization"));
+        if (token != null) {
+            authenticationService.logout(token);
+        }
+        if (logoutRequest != null && logoutRequest.getRefreshToken() != null) {
+            refreshTokenService.revoke(logoutRequest.getRefreshToken());
+        }
         return ResponseEntity.ok("User logged out successfully");
     }
     
@@ -85,9 +131,18 @@ public class AuthController {
         }
     }
     
+    /**
+     * Checks a code for a login that passed its password step. Codes are spent when checked, so only
+     * the holder of that login's challenge may check them; otherwise anyone could burn a user's
+     * pending code or its attempts.
+     */
     @PostMapping("/2fa/verify")
     public ResponseEntity<?> verify2FA(@Valid @RequestBody TwoFactorVerifyRequest request,
                                        HttpServletRequest httpRequest) {
+        if (!twoFactorChallengeTokens.isValid(request.getTwoFactorChallenge(), request.getUsername())) {
+            return ResponseEntity.badRequest().body("Invalid or expired 2FA challenge");
+        }
+        
         try {
             User user = userRepository.findByUsername(request.getUsername())
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -117,12 +172,4 @@ public class AuthController {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
-    
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xfHeader = request.getHeader("X-Forwarded-For");
-        if (xfHeader == null) {
-            return request.getRemoteAddr();
-        }
-        return xfHeader.split(",")[0];
-    }
 }
@@ -0,0 +1,35 @@
+package com.authapp.controller;
+
+import com.authapp.security.jwt.JwtKeyRing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Publishes the public token verification keys so other services can verify access tokens
+ * without calling back. Responses carry an ETag, so conditional requests get a 304.
+ */
+@RestController
+public class JwksController {
+    
+    @Autowired
+    private JwtKeyRing keyRing;
+    
+    @Value("${app.jwt.jwks-max-age-seconds:3600}")
+    private long maxAgeSeconds;
+    
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        JwtKeyRing.JwksDocument jwks = keyRing.getJwks();
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic())
+            .eTag(jwks.etag())
+            .body(jwks.body());
+    }
+}
@@ -0,0 +1,42 @@
+package com.authapp.controller;
+
+import com.authapp.dto.LoginRequest;
+import com.authapp.security.ratelimit.ServiceOverloadedException;
+import com.authapp.service.ReactiveAuthenticationService;
+import com.authapp.util.ClientIpResolver;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+/**
+ * Login endpoint that frees the request thread while the login waits on external calls; the
+ * request completes asynchronously. Requests and responses match {@code /api/auth/login}.
+ */
+@RestController
+@RequestMapping("/api/v2/auth")
+public class ReactiveAuthController {
+    
+    @Autowired
+    private ReactiveAuthenticationService reactiveAuthenticationService;
+    
+    @PostMapping("/login")
+    public Mono<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+                                                    HttpServletRequest request) {
+        // Read from the request before the thread is released
+        String ipAddress = ClientIpResolver.resolve(request);
+        String userAgent = request.getHeader("User-Agent");
+        
+        return reactiveAuthenticationService.authenticate(loginRequest, ipAddress, userAgent)
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .onErrorResume(ServiceOverloadedException.class, e -> Mono.just(ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(e.getMessage())))
+            .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().body(e.getMessage())));
+    }
+}
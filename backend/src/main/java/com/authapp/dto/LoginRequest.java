@@ -12,5 +12,6 @@ public class LoginRequest {
     private String password;
     private String authMethod; // BASIC, JWT, KEYCLOAK, LDAP
     private String twoFactorCode; // For 2FA verification
+    private String twoFactorChallenge; // Returned with twoFactorRequired; sent back with the code
     private String recaptchaToken; // For reCAPTCHA verification
 }
@@ -11,6 +11,7 @@ import java.util.Set;
 @AllArgsConstructor
 public class LoginResponse {
     private String token;
+    private String refreshToken;
     private String type = "Bearer";
     private String username;
     private String email;
@@ -19,4 +20,5 @@ public class LoginResponse {
     private String authMethod;
     private boolean twoFactorRequired;
     private String twoFactorMethod; // TOTP, SMS, EMAIL
+    private String twoFactorChallenge; // Proof that the password step passed, valid for a few minutes
 }
@@ -0,0 +1,19 @@
+package com.authapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRefreshResponse {
+    private String token;
+    private String refreshToken;
+    private String type = "Bearer";
+    
+    public TokenRefreshResponse(String token, String refreshToken) {
+        this.token = token;
+        this.refreshToken = refreshToken;
+    }
+}
@@ -4,6 +4,7 @@ public class TwoFactorVerifyRequest {
     private String username;
     private String code;
     private boolean useBackupCode;
+    private String twoFactorChallenge; // Returned with twoFactorRequired by the login
     
     public TwoFactorVerifyRequest() {}
     
@@ -30,4 +31,12 @@ public class TwoFactorVerifyRequest {
     public void setUseBackupCode(boolean useBackupCode) {
         this.useBackupCode = useBackupCode;
     }
+    
+    public String getTwoFactorChallenge() {
+        return twoFactorChallenge;
+    }
+    
+    public void setTwoFactorChallenge(String twoFactorChallenge) {
+        this.twoFactorChallenge = twoFactorChallenge;
+    }
 }
@@ -0,0 +1,14 @@
+package com.authapp.event;
+
+/**
+ * Published when any role or privilege is created, updated or removed.
+ *
+ * @param detectedByReload whether the change was found by the periodic role reload rather than made
+ *                         through this node; the node that made it has already acted on it
+ */
+public record RoleModelChangedEvent(boolean detectedByReload) {
+    
+    public static RoleModelChangedEvent local() {
+        return new RoleModelChangedEvent(false);
+    }
+}
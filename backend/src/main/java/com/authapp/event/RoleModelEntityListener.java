@@ -0,0 +1,25 @@
+package com.authapp.event;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * JPA listener on {@code Role} and {@code Privilege} that turns every change into a
+ * {@link RoleModelChangedEvent}. Hibernate obtains it from the Spring bean container,
+ * so it can be autowired.
+ */
+public class RoleModelEntityListener {
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        eventPublisher.publishEvent(RoleModelChangedEvent.local());
+    }
+}
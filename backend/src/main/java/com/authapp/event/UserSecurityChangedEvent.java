@@ -0,0 +1,8 @@
+package com.authapp.event;
+
+/**
+ * Published when a user's lock state, two-factor state or roles change, so anything
+ * caching that user's security data can drop it.
+ */
+public record UserSecurityChangedEvent(String username) {
+}
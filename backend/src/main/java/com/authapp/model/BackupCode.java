@@ -0,0 +1,45 @@
+package com.authapp.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Unused two-factor backup code. Only an HMAC-SHA256 of the code, keyed with a server-side pepper,
+ * is stored, so a code is found with one index lookup and consumed by deleting its row.
+ */
+@Entity
+@Table(name = "two_factor_backup_codes", indexes = {
+    @Index(name = "idx_backup_codes_user_hash", columnList = "user_id, code_hash", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackupCode {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private User user;
+    
+    @Column(name = "code_hash", nullable = false, length = 64)
+    private String codeHash;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -14,8 +14,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class LoginAttempt {
     
+    // Pooled sequence ids let Hibernate batch inserts, which IDENTITY columns prevent
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "login_attempts_seq")
+    @SequenceGenerator(name = "login_attempts_seq", sequenceName = "login_attempts_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -44,6 +46,9 @@ public class LoginAttempt {
     
     @PrePersist
     protected void onCreate() {
-        attemptTime = LocalDateTime.now();
+        // Queued attempts keep the time they were made, not the time they were written
+        if (attemptTime == null) {
+            attemptTime = LocalDateTime.now();
+        }
     }
 }
@@ -0,0 +1,35 @@
+package com.authapp.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outstanding SMS or email code for a user, used when codes must be shared between nodes. Only an
+ * HMAC of the code is stored.
+ */
+@Entity
+@Table(name = "otp_challenges", indexes = {
+    @Index(name = "idx_otp_challenges_expires", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OtpChallenge {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(name = "code_hash", nullable = false, length = 64)
+    private String codeHash;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    @Column(name = "attempts_left", nullable = false)
+    private int attemptsLeft;
+}
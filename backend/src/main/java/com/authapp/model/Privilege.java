@@ -1,11 +1,13 @@
 package com.authapp.model;
 
+import com.authapp.event.RoleModelEntityListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
+@EntityListeners(RoleModelEntityListener.class)
 @Table(name = "privileges")
 @Data
 @NoArgsConstructor
@@ -26,4 +28,8 @@ public class Privilege {
     
     @Column(name = "action_type")
     private String actionType;
+    
+    // Stable position of this privilege in a user's privilege mask; never reused
+    @Column(name = "bit_index", unique = true)
+    private Integer bitIndex;
 }
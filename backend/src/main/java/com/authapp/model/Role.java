@@ -1,5 +1,6 @@
 package com.authapp.model;
 
+import com.authapp.event.RoleModelEntityListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,6 +10,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@EntityListeners(RoleModelEntityListener.class)
 @Table(name = "roles")
 @Data
 @NoArgsConstructor
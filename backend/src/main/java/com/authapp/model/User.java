@@ -41,6 +41,9 @@ public class User {
     @Column(name = "failed_login_attempts")
     private int failedLoginAttempts = 0;
     
+    @Column(name = "token_version", nullable = false)
+    private long tokenVersion = 0;
+    
     @Column(name = "last_login")
     private LocalDateTime lastLogin;
     
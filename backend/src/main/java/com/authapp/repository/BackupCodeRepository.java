@@ -0,0 +1,20 @@
+package com.authapp.repository;
+
+import com.authapp.model.BackupCode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BackupCodeRepository extends JpaRepository<BackupCode, Long> {
+    
+    // Only one of two concurrent uses of the same code deletes the row
+    @Modifying
+    @Query("DELETE FROM BackupCode b WHERE b.user.id = ?1 AND b.codeHash = ?2")
+    int consume(Long userId, String codeHash);
+    
+    @Modifying
+    @Query("DELETE FROM BackupCode b WHERE b.user.id = ?1")
+    int deleteByUserId(Long userId);
+}
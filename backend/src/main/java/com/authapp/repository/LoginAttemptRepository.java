@@ -1,12 +1,16 @@
 package com.authapp.repository;
 
 import com.authapp.model.LoginAttempt;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Long> {
@@ -20,4 +24,19 @@ public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Long
     
     @Query("SELECT COUNT(l) FROM LoginAttempt l WHERE l.ipAddress = ?1 AND l.success = false AND l.attemptTime > ?2")
     long countFailedAttemptsByIp(String ipAddress, LocalDateTime time);
+    
+    // Used to rebuild the in-memory attempt counters at startup; read in batches, so a window holding
+    // millions of attempts is never materialised at once. Close the stream inside the transaction.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<AttemptSample> streamByAttemptTimeAfter(LocalDateTime time);
+    
+    interface AttemptSample {
+        String getUsername();
+        String getIpAddress();
+        boolean isSuccess();
+        LocalDateTime getAttemptTime();
+    }
 }
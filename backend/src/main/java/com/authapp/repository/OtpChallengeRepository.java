@@ -0,0 +1,31 @@
+package com.authapp.repository;
+
+import com.authapp.model.OtpChallenge;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface OtpChallengeRepository extends JpaRepository<OtpChallenge, Long> {
+    
+    @Modifying
+    @Query("UPDATE OtpChallenge c SET c.attemptsLeft = c.attemptsLeft - 1 " +
+           "WHERE c.userId = ?1 AND c.attemptsLeft > 0 AND c.expiresAt > ?2")
+    int takeAttempt(Long userId, LocalDateTime now);
+    
+    // Only one of two concurrent uses of the same code deletes the row
+    @Modifying
+    @Query("DELETE FROM OtpChallenge c WHERE c.userId = ?1 AND c.codeHash = ?2")
+    int consume(Long userId, String codeHash);
+    
+    @Modifying
+    @Query("DELETE FROM OtpChallenge c WHERE c.userId = ?1")
+    int deleteByUserId(Long userId);
+    
+    @Modifying
+    @Query("DELETE FROM OtpChallenge c WHERE c.expiresAt <= ?1 OR c.attemptsLeft <= 0")
+    int deleteExpired(LocalDateTime now);
+}
@@ -2,6 +2,7 @@ package com.authapp.repository;
 
 import com.authapp.model.Privilege;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,4 +10,7 @@ import java.util.Optional;
 @Repository
 public interface PrivilegeRepository extends JpaRepository<Privilege, Long> {
     Optional<Privilege> findByName(String name);
+    
+    @Query("SELECT MAX(p.bitIndex) FROM Privilege p")
+    Integer findMaxBitIndex();
 }
@@ -2,8 +2,13 @@ package com.authapp.repository;
 
 import com.authapp.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +17,48 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.failedLoginAttempts = 0, u.lastLogin = ?2, u.updatedAt = ?2 WHERE u.id = ?1")
+    int recordSuccessfulLogin(Long id, LocalDateTime loginTime);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.failedLoginAttempts = u.failedLoginAttempts + 1, u.updatedAt = ?2 WHERE u.id = ?1")
+    int incrementFailedLoginAttempts(Long id, LocalDateTime time);
+    
+    // Only the update that crosses the threshold locks the account and bumps the token version
+    @Modifying
+    @Query("UPDATE User u SET u.isLocked = true, u.tokenVersion = u.tokenVersion + 1, u.updatedAt = ?3 " +
+           "WHERE u.id = ?1 AND u.isLocked = false AND u.failedLoginAttempts >= ?2")
+    int lockIfFailedAttemptsReached(Long id, int maxFailedAttempts, LocalDateTime time);
+    
+    @Query("SELECT u.tokenVersion FROM User u WHERE u.username = ?1")
+    Optional<Long> findTokenVersionByUsername(String username);
+    
+    @Query("SELECT u.username AS username, u.tokenVersion AS tokenVersion FROM User u WHERE u.tokenVersion > 0")
+    List<UserTokenVersion> findBumpedTokenVersions(Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.tokenVersion = u.tokenVersion + 1")
+    int incrementAllTokenVersions();
+    
+    // Skipped if the password changed since the old hash was read
+    @Modifying
+    @Query("UPDATE User u SET u.password = ?3, u.updatedAt = ?4 WHERE u.id = ?1 AND u.password = ?2")
+    int replacePasswordHash(Long id, String oldHash, String newHash, LocalDateTime time);
+    
+    // The prefix covers the algorithm id and the BCrypt version and cost, e.g. {bcrypt}$2a$12$
+    @Query("SELECT SUBSTRING(u.password, 1, LOCATE('$', u.password) + 6) AS prefix, COUNT(u) AS users " +
+           "FROM User u GROUP BY SUBSTRING(u.password, 1, LOCATE('$', u.password) + 6)")
+    List<HashPrefixCount> countByHashPrefix();
+    
+    interface UserTokenVersion {
+        String getUsername();
+        long getTokenVersion();
+    }
+    
+    interface HashPrefixCount {
+        String getPrefix();
+        long getUsers();
+    }
 }
@@ -0,0 +1,164 @@
+package com.authapp.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The password hash algorithm and work factor used by this node.
+ *
+ * The BCrypt cost is either configured or calibrated at startup: one hash is timed at the minimum
+ * cost, and since each step doubles the work, the highest cost expected to fit the latency budget is
+ * picked. New hashes are stored with a {@code {bcrypt}} prefix.
+ *
+ * A stored hash is kept while its cost is inside the accepted range, and re-hashed at this node's
+ * cost on the next successful login otherwise, or when it has no prefix. A calibrated cost accepts
+ * the whole {@code [min-cost, max-cost]} range, so nodes on different hardware, which calibrate to
+ * different costs, do not re-hash each other's hashes back and forth. A configured cost is the same
+ * on every node and accepts only itself.
+ */
+public final class PasswordHashPolicy {
+    
+    public static final String BCRYPT = "bcrypt";
+    public static final String LEGACY_BCRYPT = "bcrypt-unprefixed";
+    
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashPolicy.class);
+    
+    private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int SAMPLES = 3;
+    
+    private final int bcryptCost;
+    private final int minAcceptedCost;
+    private final int maxAcceptedCost;
+    
+    public PasswordHashPolicy(int bcryptCost) {
+        this(bcryptCost, bcryptCost, bcryptCost);
+    }
+    
+    public PasswordHashPolicy(int bcryptCost, int minAcceptedCost, int maxAcceptedCost) {
+        this.bcryptCost = bcryptCost;
+        this.minAcceptedCost = minAcceptedCost;
+        this.maxAcceptedCost = maxAcceptedCost;
+    }
+    
+    /**
+     * Times BCrypt on this host and picks the highest cost in {@code [minCost, maxCost]} whose hash
+     * is expected to take no longer than the budget.
+     */
+    public static PasswordHashPolicy calibrate(Duration budget, int minCost, int maxCost) {
+        // Let the JIT compile BCrypt before timing it
+        BCryptPasswordEncoder warmup = new BCryptPasswordEncoder(4);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            warmup.encode("calibration");
+        }
+        
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minCost);
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration");
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        
+        int cost = minCost;
+        long estimate = bestNanos;
+        while (cost < maxCost && estimate * 2 <= budget.toNanos()) {
+            cost++;
+            estimate *= 2;
+        }
+        logger.info("Calibrated BCrypt cost {} (~{} ms per hash, budget {} ms)", cost,
+                Duration.ofNanos(estimate).toMillis(), budget.toMillis());
+        return new PasswordHashPolicy(cost, minCost, maxCost);
+    }
+    
+    public int getBcryptCost() {
+        return bcryptCost;
+    }
+    
+    /**
+     * @return whether a stored hash with this algorithm and cost is kept rather than re-hashed
+     */
+    public boolean isAccepted(HashCost hashCost) {
+        return BCRYPT.equals(hashCost.algorithm()) && isAcceptedCost(hashCost.cost());
+    }
+    
+    private boolean isAcceptedCost(int cost) {
+        return cost >= minAcceptedCost && cost <= maxAcceptedCost;
+    }
+    
+    public PasswordEncoder createEncoder() {
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(BCRYPT,
+                Map.of(BCRYPT, new CostAwareBCryptPasswordEncoder(bcryptCost, this::isAcceptedCost)));
+        // Hashes stored before the prefix was introduced are plain BCrypt
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return encoder;
+    }
+    
+    /**
+     * Algorithm and cost of a stored hash; the algorithm is {@code "unknown"} and the cost
+     * {@code -1} for anything that is not recognised.
+     */
+    public static HashCost describe(String storedHash) {
+        if (storedHash == null) {
+            return new HashCost("unknown", -1);
+        }
+        
+        // Unprefixed hashes predate the delegating encoder and are re-hashed whatever their cost
+        String algorithm = LEGACY_BCRYPT;
+        String hash = storedHash;
+        if (hash.startsWith("{")) {
+            int end = hash.indexOf('}');
+            if (end < 0) {
+                return new HashCost("unknown", -1);
+            }
+            algorithm = hash.substring(1, end);
+            hash = hash.substring(end + 1);
+        }
+        if (!BCRYPT.equals(algorithm) && !LEGACY_BCRYPT.equals(algorithm)) {
+            return new HashCost(algorithm, -1);
+        }
+        
+        int cost = bcryptCost(hash);
+        return cost < 0 ? new HashCost("unknown", -1) : new HashCost(algorithm, cost);
+    }
+    
+    private static int bcryptCost(String hash) {
+        if (hash == null) {
+            return -1;
+        }
+        Matcher matcher = BCRYPT_HASH.matcher(hash);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+    
+    public record HashCost(String algorithm, int cost) {
+    }
+    
+    /**
+     * Asks for re-hashing whenever the stored cost is outside the accepted range; the stock encoder
+     * only does so when it is below the encoding cost.
+     */
+    private static final class CostAwareBCryptPasswordEncoder extends BCryptPasswordEncoder {
+        
+        private final IntPredicate acceptedCost;
+        
+        CostAwareBCryptPasswordEncoder(int cost, IntPredicate acceptedCost) {
+            super(cost);
+            this.acceptedCost = acceptedCost;
+        }
+        
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            int storedCost = bcryptCost(encodedPassword);
+            return storedCost >= 0 && !acceptedCost.test(storedCost);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.authapp.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Privilege helpers for method security, e.g.
+ * {@code @PreAuthorize("@privileges.hasAll('READ_PRIVILEGE', 'WRITE_PRIVILEGE')")}.
+ *
+ * All requested privileges are combined into one mask and checked against the principal's mask
+ * with a single AND, however many are named.
+ */
+@Component("privileges")
+public class PrivilegeChecks {
+    
+    private final RoleAuthorityRegistry roleAuthorityRegistry;
+    
+    public PrivilegeChecks(RoleAuthorityRegistry roleAuthorityRegistry) {
+        this.roleAuthorityRegistry = roleAuthorityRegistry;
+    }
+    
+    public boolean has(String privilegeName) {
+        return hasAll(privilegeName);
+    }
+    
+    public boolean hasAll(String... privilegeNames) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return false;
+        }
+        
+        long required = 0L;
+        for (String privilegeName : privilegeNames) {
+            long bit = roleAuthorityRegistry.privilegeMask(privilegeName);
+            if (bit == 0L) {
+                return hasAllAuthorities(authentication, privilegeNames);
+            }
+            required |= bit;
+        }
+        
+        if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.hasPrivileges(required);
+        }
+        return hasAllAuthorities(authentication, privilegeNames);
+    }
+    
+    public boolean hasAny(String... privilegeNames) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return false;
+        }
+        
+        for (String privilegeName : privilegeNames) {
+            long bit = roleAuthorityRegistry.privilegeMask(privilegeName);
+            boolean granted = bit != 0L && authentication.getPrincipal() instanceof UserPrincipal principal
+                    ? principal.hasPrivileges(bit)
+                    : PrivilegePermissionEvaluator.hasAuthority(authentication, privilegeName);
+            if (granted) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean hasAllAuthorities(Authentication authentication, String... privilegeNames) {
+        for (String privilegeName : privilegeNames) {
+            if (!PrivilegePermissionEvaluator.hasAuthority(authentication, privilegeName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package com.authapp.security;
+
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+
+/**
+ * Evaluates {@code hasPermission} expressions against the privilege mask of a {@link UserPrincipal}.
+ *
+ * <ul>
+ *   <li>{@code hasPermission(#target, 'WRITE_PRIVILEGE')} checks a privilege by name</li>
+ *   <li>{@code hasPermission(#id, 'USER', 'WRITE')} checks for any privilege granting the action on
+ *       the resource type, or on all resources</li>
+ * </ul>
+ *
+ * Privileges are granted per role rather than per object, so the target itself is not inspected.
+ * Principals without a mask, and privileges without a bit, fall back to the string authorities.
+ */
+@Component
+public class PrivilegePermissionEvaluator implements PermissionEvaluator {
+    
+    private final RoleAuthorityRegistry roleAuthorityRegistry;
+    
+    public PrivilegePermissionEvaluator(RoleAuthorityRegistry roleAuthorityRegistry) {
+        this.roleAuthorityRegistry = roleAuthorityRegistry;
+    }
+    
+    @Override
+    public boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
+        if (authentication == null || permission == null) {
+            return false;
+        }
+        
+        String privilegeName = permission.toString();
+        long required = roleAuthorityRegistry.privilegeMask(privilegeName);
+        if (required != 0L && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.hasPrivileges(required);
+        }
+        return hasAuthority(authentication, privilegeName);
+    }
+    
+    @Override
+    public boolean hasPermission(Authentication authentication, Serializable targetId, String targetType,
+                                 Object permission) {
+        if (authentication == null || permission == null) {
+            return false;
+        }
+        
+        long granting = roleAuthorityRegistry.actionMask(targetType, permission.toString());
+        return granting != 0L
+                && authentication.getPrincipal() instanceof UserPrincipal principal
+                && (principal.getPrivilegeMask() & granting) != 0L;
+    }
+    
+    static boolean hasAuthority(Authentication authentication, String authority) {
+        for (GrantedAuthority granted : authentication.getAuthorities()) {
+            if (authority.equals(granted.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
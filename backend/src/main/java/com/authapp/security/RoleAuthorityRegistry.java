@@ -0,0 +1,268 @@
+package com.authapp.security;
+
+import com.authapp.event.RoleModelChangedEvent;
+import com.authapp.model.Privilege;
+import com.authapp.model.Role;
+import com.authapp.repository.RoleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Copy-on-write registry of precomputed, immutable authorities per role.
+ *
+ * The role to privilege graph rarely changes, so every login and bearer request for a single-role
+ * user reuses the same lists and sets instead of building new ones. The snapshot is rebuilt from
+ * the database at startup and whenever a role, privilege or role-privilege link change commits. A
+ * periodic rebuild also catches changes made outside JPA, such as direct SQL, and announces them
+ * like any other role model change.
+ *
+ * Each privilege with a {@code bitIndex} below 64 also contributes one bit to a privilege mask,
+ * which permission checks compare with a single bitwise AND.
+ */
+@Component
+public class RoleAuthorityRegistry {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RoleAuthorityRegistry.class);
+    
+    private static final String ROLE_PREFIX = "ROLE_";
+    private static final String ANY_RESOURCE = "ALL";
+    
+    private final RoleRepository roleRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    private final ReentrantLock registerLock = new ReentrantLock();
+    
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), Map.of());
+    
+    public RoleAuthorityRegistry(RoleRepository roleRepository, PlatformTransactionManager transactionManager,
+                                 ApplicationEventPublisher eventPublisher) {
+        this.roleRepository = roleRepository;
+        this.eventPublisher = eventPublisher;
+        // Also runs from after-commit listeners, where it needs its own transaction
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+    
+    /**
+     * Combined authorities for a user's roles. Shared instances are returned for a single role.
+     */
+    public RoleAuthorities resolve(Collection<Role> roles) {
+        if (roles.size() == 1) {
+            Role role = roles.iterator().next();
+            RoleAuthorities cached = snapshot.roles().get(role.getName());
+            return cached != null ? cached : register(role);
+        }
+        
+        RoleAuthorities[] parts = new RoleAuthorities[roles.size()];
+        int i = 0;
+        for (Role role : roles) {
+            RoleAuthorities cached = snapshot.roles().get(role.getName());
+            parts[i++] = cached != null ? cached : register(role);
+        }
+        return merge(parts);
+    }
+    
+    /**
+     * Combined authorities for role names taken from a token.
+     *
+     * @return the authorities, or {@code null} if any of the roles is unknown to this node
+     */
+    public RoleAuthorities resolveByNames(Collection<?> roleNames) {
+        Map<String, RoleAuthorities> current = snapshot.roles();
+        if (roleNames.size() == 1) {
+            return current.get(String.valueOf(roleNames.iterator().next()));
+        }
+        
+        RoleAuthorities[] parts = new RoleAuthorities[roleNames.size()];
+        int i = 0;
+        for (Object roleName : roleNames) {
+            RoleAuthorities cached = current.get(String.valueOf(roleName));
+            if (cached == null) {
+                return null;
+            }
+            parts[i++] = cached;
+        }
+        return merge(parts);
+    }
+    
+    /**
+     * @return the bit of the named privilege, or {@code 0} if it has no bit
+     */
+    public long privilegeMask(String privilegeName) {
+        return snapshot.privilegeBits().getOrDefault(privilegeName, 0L);
+    }
+    
+    /**
+     * @return the bits of every privilege granting the action on the resource type, including
+     *         privileges granted on all resources
+     */
+    public long actionMask(String resourceType, String actionType) {
+        Map<String, Long> actionMasks = snapshot.actionMasks();
+        return actionMasks.getOrDefault(actionKey(resourceType, actionType), 0L)
+                | actionMasks.getOrDefault(actionKey(ANY_RESOURCE, actionType), 0L);
+    }
+    
+    /**
+     * Mask for privilege names carried by a token whose roles are not in the snapshot.
+     */
+    public long privilegeMask(Collection<?> privilegeNames) {
+        Map<String, Long> privilegeBits = snapshot.privilegeBits();
+        long mask = 0L;
+        for (Object privilegeName : privilegeNames) {
+            mask |= privilegeBits.getOrDefault(String.valueOf(privilegeName), 0L);
+        }
+        return mask;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+    
+    // Runs before the user details cache drops its entries, so reloads see the new snapshot
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleModelChanged(RoleModelChangedEvent event) {
+        if (!event.detectedByReload()) {
+            reload();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.security.role-registry.reload-interval-ms:300000}",
+               initialDelayString = "${app.security.role-registry.reload-interval-ms:300000}")
+    public void reloadIfChanged() {
+        Snapshot previous = snapshot;
+        reload();
+        if (!previous.equals(snapshot)) {
+            logger.info("Role model changed outside the application, reloaded role authorities");
+            eventPublisher.publishEvent(new RoleModelChangedEvent(true));
+        }
+    }
+    
+    public void reload() {
+        snapshot = readOnlyTransaction.execute(status -> {
+            Map<String, GrantedAuthority> interned = new HashMap<>();
+            Map<String, RoleAuthorities> roles = new HashMap<>();
+            Map<String, Long> privilegeBits = new HashMap<>();
+            Map<String, Long> actionMasks = new HashMap<>();
+            for (Role role : roleRepository.findAll()) {
+                roles.put(role.getName(), build(role, interned));
+                for (Privilege privilege : role.getPrivileges()) {
+                    long bit = bitOf(privilege);
+                    if (bit != 0L && privilegeBits.putIfAbsent(privilege.getName(), bit) == null) {
+                        actionMasks.merge(actionKey(privilege.getResourceType(), privilege.getActionType()), bit,
+                                (a, b) -> a | b);
+                    }
+                }
+            }
+            return new Snapshot(Map.copyOf(roles), Map.copyOf(privilegeBits), Map.copyOf(actionMasks));
+        });
+    }
+    
+    private RoleAuthorities register(Role role) {
+        // A role created after the last reload; add it with a copy of the snapshot. A lock rather
+        // than synchronized, since reading the role's privileges may hit the database and a virtual
+        // thread would stay pinned to its carrier inside a monitor.
+        registerLock.lock();
+        try {
+            Snapshot current = snapshot;
+            RoleAuthorities existing = current.roles().get(role.getName());
+            if (existing != null) {
+                return existing;
+            }
+            
+            Map<String, GrantedAuthority> interned = new HashMap<>();
+            Map<String, RoleAuthorities> updated = new HashMap<>(current.roles());
+            for (RoleAuthorities roleAuthorities : updated.values()) {
+                for (GrantedAuthority authority : roleAuthorities.authorities()) {
+                    interned.put(authority.getAuthority(), authority);
+                }
+            }
+            RoleAuthorities built = build(role, interned);
+            updated.put(role.getName(), built);
+            snapshot = new Snapshot(Map.copyOf(updated), current.privilegeBits(), current.actionMasks());
+            return built;
+        } finally {
+            registerLock.unlock();
+        }
+    }
+    
+    private static RoleAuthorities build(Role role, Map<String, GrantedAuthority> interned) {
+        Set<String> privilegeNames = new LinkedHashSet<>();
+        Set<GrantedAuthority> authorities = new LinkedHashSet<>();
+        long privilegeMask = 0L;
+        authorities.add(interned.computeIfAbsent(ROLE_PREFIX + role.getName(), SimpleGrantedAuthority::new));
+        for (Privilege privilege : role.getPrivileges()) {
+            privilegeNames.add(privilege.getName());
+            authorities.add(interned.computeIfAbsent(privilege.getName(), SimpleGrantedAuthority::new));
+            privilegeMask |= bitOf(privilege);
+        }
+        return new RoleAuthorities(Set.of(role.getName()), Set.copyOf(privilegeNames), List.copyOf(authorities),
+                privilegeMask);
+    }
+    
+    private static RoleAuthorities merge(RoleAuthorities[] parts) {
+        Set<String> roleNames = new LinkedHashSet<>();
+        Set<String> privilegeNames = new LinkedHashSet<>();
+        Set<GrantedAuthority> authorities = new LinkedHashSet<>();
+        long privilegeMask = 0L;
+        for (RoleAuthorities part : parts) {
+            roleNames.addAll(part.roleNames());
+            privilegeNames.addAll(part.privilegeNames());
+            authorities.addAll(part.authorities());
+            privilegeMask |= part.privilegeMask();
+        }
+        return new RoleAuthorities(Set.copyOf(roleNames), Set.copyOf(privilegeNames), List.copyOf(authorities),
+                privilegeMask);
+    }
+    
+    private static long bitOf(Privilege privilege) {
+        Integer bitIndex = privilege.getBitIndex();
+        if (bitIndex == null || bitIndex < 0 || bitIndex >= Long.SIZE) {
+            // Checks for this privilege fall back to its string authority
+            if (bitIndex != null) {
+                logger.warn("Privilege {} has bit index {} outside the mask", privilege.getName(), bitIndex);
+            }
+            return 0L;
+        }
+        return 1L << bitIndex;
+    }
+    
+    private static String actionKey(String resourceType, String actionType) {
+        return resourceType + ':' + actionType;
+    }
+    
+    private record Snapshot(Map<String, RoleAuthorities> roles, Map<String, Long> privilegeBits,
+                            Map<String, Long> actionMasks) {
+    }
+    
+    /**
+     * Immutable authorities granted by one role or a combination of roles.
+     */
+    public record RoleAuthorities(Set<String> roleNames, Set<String> privilegeNames,
+                                  List<GrantedAuthority> authorities, long privilegeMask) {
+    }
+}
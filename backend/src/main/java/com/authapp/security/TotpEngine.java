@@ -0,0 +1,194 @@
+package com.authapp.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * RFC 6238 TOTP verification (HMAC-SHA1, 6 digits, 30 second steps), compatible with the codes
+ * Google Authenticator produces for secrets issued by {@code GoogleAuthenticator}.
+ *
+ * Decoded keys are cached per user, so the secret is read and Base32-decoded once rather than on
+ * every check. Each thread reuses one {@link Mac} and output buffer, and the steps in the window are
+ * checked without allocating. The last step a user's code was accepted for is remembered, and codes
+ * for that step or earlier are rejected, so an observed code cannot be replayed. That memory is
+ * per node, which is enough when a login is served by one node.
+ */
+@Component
+public class TotpEngine {
+    
+    private static final String ALGORITHM = "HmacSHA1";
+    private static final long STEP_MILLIS = 30_000L;
+    private static final int DIGITS = 6;
+    private static final int MODULUS = 1_000_000;
+    
+    private final int window;
+    private final Cache<Long, SecretKeySpec> keys;
+    private final Cache<Long, AtomicLong> lastUsedSteps;
+    private final ThreadLocal<HotpGenerator> generators = ThreadLocal.withInitial(HotpGenerator::new);
+    
+    public TotpEngine(@Value("${app.2fa.totp.window:1}") int window,
+                      @Value("${app.2fa.totp.max-users:100000}") long maxUsers) {
+        this.window = window;
+        this.keys = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .build();
+        // Must outlive the window; a step is never accepted twice while its entry is held
+        this.lastUsedSteps = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(Duration.ofMillis(STEP_MILLIS * (2L * window + 2)))
+                .build();
+    }
+    
+    /**
+     * @param secretLoader supplies the user's Base32 secret on a cache miss
+     * @return whether the code is valid for the current window and has not been used before
+     */
+    public boolean verify(long userId, String code, Supplier<String> secretLoader) {
+        int candidate = parseCode(code);
+        if (candidate < 0) {
+            return false;
+        }
+        
+        // Loaded outside the cache's compute, so a database read never runs under its lock
+        SecretKeySpec key = keys.getIfPresent(userId);
+        if (key == null) {
+            String secret = secretLoader.get();
+            if (secret == null || secret.isEmpty()) {
+                return false;
+            }
+            key = new SecretKeySpec(decodeBase32(secret), ALGORITHM);
+            keys.put(userId, key);
+        }
+        
+        long currentStep = Math.floorDiv(System.currentTimeMillis(), STEP_MILLIS);
+        HotpGenerator generator = generators.get();
+        for (long step = currentStep - window; step <= currentStep + window; step++) {
+            if (generator.generate(key, step) == candidate) {
+                return markUsed(userId, step);
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Drops the cached key and replay state, after the user's secret changed or 2FA was turned off.
+     */
+    public void forget(long userId) {
+        keys.invalidate(userId);
+        lastUsedSteps.invalidate(userId);
+    }
+    
+    private boolean markUsed(long userId, long step) {
+        AtomicLong lastUsed = lastUsedSteps.get(userId, id -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long last = lastUsed.get();
+            if (step <= last) {
+                return false;
+            }
+            if (lastUsed.compareAndSet(last, step)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * @return the code as a number, or {@code -1} unless it is exactly six ASCII digits
+     */
+    private static int parseCode(String code) {
+        if (code == null || code.length() != DIGITS) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < DIGITS; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    static byte[] decodeBase32(String encoded) {
+        byte[] decoded = new byte[encoded.length() * 5 / 8];
+        int buffer = 0;
+        int bits = 0;
+        int length = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            int value;
+            if (c >= 'A' && c <= 'Z') {
+                value = c - 'A';
+            } else if (c >= 'a' && c <= 'z') {
+                value = c - 'a';
+            } else if (c >= '2' && c <= '7') {
+                value = c - '2' + 26;
+            } else if (c == '=' || c == ' ' || c == '-') {
+                continue;
+            } else {
+                throw new IllegalArgumentException("Invalid Base32 character in TOTP secret");
+            }
+            buffer = (buffer << 5) | value;
+            bits += 5;
+            if (bits >= 8) {
+                decoded[length++] = (byte) (buffer >> (bits - 8));
+                bits -= 8;
+            }
+        }
+        return Arrays.copyOf(decoded, length);
+    }
+    
+    /**
+     * One HMAC instance and output buffer per thread. The key is only re-initialised when it
+     * changes, which for a single verification is once.
+     */
+    private static final class HotpGenerator {
+        
+        private final Mac mac;
+        private final byte[] hash;
+        private SecretKeySpec currentKey;
+        
+        HotpGenerator() {
+            try {
+                this.mac = Mac.getInstance(ALGORITHM);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " is not available", e);
+            }
+            this.hash = new byte[mac.getMacLength()];
+        }
+        
+        int generate(SecretKeySpec key, long counter) {
+            try {
+                if (key != currentKey) {
+                    mac.init(key);
+                    currentKey = key;
+                }
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    mac.update((byte) (counter >>> shift));
+                }
+                mac.doFinal(hash, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("TOTP computation failed", e);
+            }
+            
+            // Dynamic truncation, RFC 4226 section 5.3
+            int offset = hash[hash.length - 1] & 0x0F;
+            int binary = ((hash[offset] & 0x7F) << 24)
+                    | ((hash[offset + 1] & 0xFF) << 16)
+                    | ((hash[offset + 2] & 0xFF) << 8)
+                    | (hash[offset + 3] & 0xFF);
+            return binary % MODULUS;
+        }
+    }
+}
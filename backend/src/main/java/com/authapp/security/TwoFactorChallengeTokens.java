@@ -0,0 +1,81 @@
+package com.authapp.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived proof that a login passed its password step and is waiting for a 2FA code. The token
+ * is {@code base64url(username).expiresAtMillis.base64url(hmac)}, signed with
+ * {@code app.2fa.challenge.secret}. The client cannot forge it, so the concurrency limiter can
+ * safely serve second-step logins from its reserve. It is not a credential: the password and code
+ * are still checked.
+ */
+@Component
+public class TwoFactorChallengeTokens {
+    
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    
+    private final long ttlMillis;
+    private final ThreadLocal<Mac> macs;
+    
+    public TwoFactorChallengeTokens(@Value("${app.2fa.challenge.secret}") String secret,
+                                    @Value("${app.2fa.challenge.ttl-seconds:300}") long ttlSeconds) {
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+    }
+    
+    public String issue(String username) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        String payload = ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8)) + '.' + expiresAt;
+        return payload + '.' + ENCODER.encodeToString(sign(payload));
+    }
+    
+    /**
+     * @return whether the token was issued by this application for the username and has not expired
+     */
+    public boolean isValid(String token, String username) {
+        if (token == null || username == null) {
+            return false;
+        }
+        int signatureStart = token.lastIndexOf('.');
+        int expiryStart = token.indexOf('.');
+        if (expiryStart < 0 || signatureStart <= expiryStart) {
+            return false;
+        }
+        
+        String payload = token.substring(0, signatureStart);
+        try {
+            if (!MessageDigest.isEqual(sign(payload), DECODER.decode(token.substring(signatureStart + 1)))) {
+                return false;
+            }
+            String tokenUsername = new String(DECODER.decode(payload.substring(0, expiryStart)), StandardCharsets.UTF_8);
+            long expiresAt = Long.parseLong(payload.substring(expiryStart + 1));
+            return expiresAt > System.currentTimeMillis() && tokenUsername.equals(username);
+        } catch (IllegalArgumentException e) {
+            // Not Base64 or not a number
+            return false;
+        }
+    }
+    
+    private byte[] sign(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+}
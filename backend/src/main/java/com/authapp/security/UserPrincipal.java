@@ -0,0 +1,108 @@
+package com.authapp.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable principal used for both password logins and bearer requests.
+ *
+ * Unlike Spring's {@code User} it does not implement {@code CredentialsContainer}, so it can be
+ * shared between requests without the provider erasing its password after authentication.
+ */
+public final class UserPrincipal implements UserDetails {
+    
+    private final String username;
+    private final String password;
+    private final List<GrantedAuthority> authorities;
+    private final boolean accountNonLocked;
+    private final boolean enabled;
+    private final long tokenVersion;
+    private final long privilegeMask;
+    
+    public UserPrincipal(String username, String password, Collection<? extends GrantedAuthority> authorities,
+                         long privilegeMask, boolean accountNonLocked, boolean enabled, long tokenVersion) {
+        this.username = username;
+        this.password = password;
+        this.authorities = List.copyOf(authorities);
+        this.accountNonLocked = accountNonLocked;
+        this.enabled = enabled;
+        this.tokenVersion = tokenVersion;
+        this.privilegeMask = privilegeMask;
+    }
+    
+    /**
+     * Builds a principal from verified token claims; it carries no password.
+     */
+    public static UserPrincipal fromToken(String username, Collection<? extends GrantedAuthority> authorities,
+                                          long privilegeMask, long tokenVersion) {
+        return new UserPrincipal(username, null, authorities, privilegeMask, true, true, tokenVersion);
+    }
+    
+    @Override
+    public String getUsername() {
+        return username;
+    }
+    
+    @Override
+    public String getPassword() {
+        return password;
+    }
+    
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+    
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+    
+    @Override
+    public boolean isAccountNonLocked() {
+        return accountNonLocked;
+    }
+    
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+    
+    /**
+     * Bits of the privileges granted through the user's roles, see {@link RoleAuthorityRegistry}.
+     */
+    public long getPrivilegeMask() {
+        return privilegeMask;
+    }
+    
+    public boolean hasPrivileges(long requiredMask) {
+        return (privilegeMask & requiredMask) == requiredMask;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof UserPrincipal other && username.equals(other.username);
+    }
+    
+    @Override
+    public int hashCode() {
+        return username.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return "UserPrincipal[" + username + "]";
+    }
+}
@@ -1,6 +1,8 @@
 package com.authapp.security.jwt;
 
+import com.authapp.security.UserPrincipal;
 import com.authapp.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,7 +13,6 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
@@ -25,15 +26,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
     
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+    
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+    
+    @Autowired
+    private TokenDenylist tokenDenylist;
+    
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                     FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUsernameFromJwtToken(jwt);
-                
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            UserDetails userDetails = jwt != null ? authenticateToken(jwt) : null;
+            if (userDetails != null && userDetails.isAccountNonLocked() && userDetails.isEnabled()) {
                 UsernamePasswordAuthenticationToken authentication = 
                     new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -47,13 +55,49 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
     
-    private String parseJwt(HttpServletRequest request) {
-        String headerAuth = request.getHeader("Authorization");
+    private UserDetails authenticateToken(String jwt) {
+        VerifiedToken cached = verifiedTokenCache.get(jwt);
+        if (cached != null) {
+            UserPrincipal principal = cached.principal();
+            if (tokenDenylist.isRevoked(cached.tokenId(), cached.expiresAtMillis())) {
+                return null;
+            }
+            if (!tokenVersionRegistry.isStale(principal.getUsername(), principal.getTokenVersion())) {
+                return principal;
+            }
+        }
         
-        if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
-            return headerAuth.substring(7);
+        JwtValidationResult result = jwtUtils.parseAndValidate(jwt);
+        if (!result.isValid()) {
+            logger.debug("Rejected bearer token: " + result.getStatus());
+            return null;
         }
         
-        return null;
+        Claims claims = result.getClaims();
+        long expiresAt = claims.getExpiration().getTime();
+        if (tokenDenylist.isRevoked(claims.getId(), expiresAt)) {
+            logger.debug("Rejected revoked bearer token");
+            return null;
+        }
+        
+        UserDetails userDetails = resolveUserDetails(result);
+        if (userDetails instanceof UserPrincipal principal) {
+            verifiedTokenCache.put(jwt, new VerifiedToken(principal, claims.getId(), expiresAt));
+        }
+        return userDetails;
+    }
+    
+    private UserDetails resolveUserDetails(JwtValidationResult result) {
+        UserPrincipal principal = jwtUtils.getPrincipalFromClaims(result.getClaims());
+        if (principal != null && !tokenVersionRegistry.isStale(principal.getUsername(), principal.getTokenVersion())) {
+            return principal;
+        }
+        
+        // Token without authority claims, or the user's security state changed after it was issued
+        return userDetailsService.loadUserByUsername(result.getUsername());
+    }
+    
+    private String parseJwt(HttpServletRequest request) {
+        return jwtUtils.extractBearerToken(request.getHeader("Authorization"));
     }
 }
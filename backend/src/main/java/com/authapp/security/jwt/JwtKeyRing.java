@@ -0,0 +1,261 @@
+package com.authapp.security.jwt;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.EdECPrivateKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Holds the keys used to sign and verify access tokens.
+ *
+ * In the default HS256 mode tokens are signed with the shared {@code app.jwt.secret}. In ES256 or
+ * EdDSA mode the key pairs come from the keystore at {@code app.jwt.keystore.path}. The keystore is
+ * shared by every node and reloaded on a schedule, so all nodes sign with the same key and publish
+ * the same JWKS, and tokens survive a restart. Each key entry's alias is its {@code kid}, and its
+ * certificate validity drives rotation:
+ * <ul>
+ *   <li>the signing key is the one whose {@code notBefore} is the latest that has passed</li>
+ *   <li>a key whose {@code notBefore} is still ahead is published in advance, so cached key sets
+ *       already hold it when it starts signing</li>
+ *   <li>a key stays verifiable until its tokens have expired after its {@code notAfter}, or until
+ *       it is removed from the keystore</li>
+ * </ul>
+ */
+@Component
+public class JwtKeyRing {
+    
+    public enum Algorithm {
+        HS256,
+        ES256,
+        EdDSA
+    }
+    
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyRing.class);
+    
+    private final Algorithm algorithm;
+    private final SecretKey secretKey;
+    private final long retentionMillis;
+    private final Path keystorePath;
+    private final char[] keystorePassword;
+    
+    // Replaced as a whole on reload, so signing and verification read it without locking
+    private volatile KeySet keySet;
+    
+    public JwtKeyRing(@Value("${app.jwt.signing-algorithm:HS256}") Algorithm algorithm,
+                      @Value("${app.jwt.secret:mySecretKeyForJWTAuthenticationThatIsLongEnoughToMeetRequirements}") String jwtSecret,
+                      @Value("${app.jwt.expiration:900000}") long jwtExpiration,
+                      @Value("${app.jwt.keystore.path:}") String keystorePath,
+                      @Value("${app.jwt.keystore.password:}") String keystorePassword) {
+        this.algorithm = algorithm;
+        this.secretKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.retentionMillis = jwtExpiration;
+        this.keystorePath = keystorePath.isBlank() ? null : Path.of(keystorePath);
+        this.keystorePassword = keystorePassword.toCharArray();
+        
+        if (isAsymmetric()) {
+            if (this.keystorePath == null) {
+                throw new IllegalStateException(algorithm + " signing needs a shared keystore in app.jwt.keystore.path");
+            }
+            this.keySet = loadKeySet();
+            if (keySet.signingKey(System.currentTimeMillis()) == null) {
+                throw new IllegalStateException("No " + algorithm + " key in " + keystorePath + " is valid now");
+            }
+        } else {
+            this.keySet = new KeySet(List.of(), Map.of(), new JwksDocument(Map.of("keys", List.of()), "\"empty\""));
+        }
+    }
+    
+    public boolean isAsymmetric() {
+        return algorithm != Algorithm.HS256;
+    }
+    
+    /**
+     * Signs the token with the current key, adding its {@code kid} header in asymmetric mode.
+     */
+    public JwtBuilder sign(JwtBuilder builder) {
+        if (!isAsymmetric()) {
+            return builder.signWith(secretKey);
+        }
+        
+        StoredKey signingKey = keySet.signingKey(System.currentTimeMillis());
+        if (signingKey == null) {
+            throw new IllegalStateException("No " + algorithm + " signing key is valid now");
+        }
+        return builder.header().keyId(signingKey.kid()).and()
+                .signWith(signingKey.privateKey(), signatureAlgorithm());
+    }
+    
+    /**
+     * @return a locator that picks the verification key by the token's {@code kid}
+     */
+    public LocatorAdapter<Key> keyLocator() {
+        return new LocatorAdapter<>() {
+            @Override
+            protected Key locate(JwsHeader header) {
+                if (!isAsymmetric()) {
+                    return secretKey;
+                }
+                
+                String kid = header.getKeyId();
+                PublicKey key = kid != null ? keySet.verificationKeys().get(kid) : null;
+                if (key == null) {
+                    throw new UnsupportedJwtException("Unknown signing key id: " + kid);
+                }
+                return key;
+            }
+        };
+    }
+    
+    public JwksDocument getJwks() {
+        return keySet.jwks();
+    }
+    
+    /**
+     * Picks up keys added to or removed from the keystore, and drops keys whose tokens have expired.
+     * A keystore that cannot be read leaves the current keys in place.
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.keystore.reload-interval-ms:60000}",
+               initialDelayString = "${app.jwt.keystore.reload-interval-ms:60000}")
+    public void reload() {
+        if (!isAsymmetric()) {
+            return;
+        }
+        
+        try {
+            KeySet loaded = loadKeySet();
+            String previousEtag = keySet.jwks().etag();
+            keySet = loaded;
+            if (!previousEtag.equals(loaded.jwks().etag())) {
+                logger.info("Reloaded JWT keys from {}, now publishing {}", keystorePath,
+                        loaded.verificationKeys().keySet());
+            }
+        } catch (IllegalStateException e) {
+            logger.error("Keeping the current JWT keys", e);
+        }
+    }
+    
+    private KeySet loadKeySet() {
+        long now = System.currentTimeMillis();
+        List<StoredKey> signingKeys = new ArrayList<>();
+        Map<String, PublicKey> verificationKeys = new HashMap<>();
+        try {
+            KeyStore keyStore = KeyStore.getInstance(keystorePath.toFile(), keystorePassword);
+            for (String alias : Collections.list(keyStore.aliases())) {
+                if (!keyStore.isKeyEntry(alias)
+                        || !(keyStore.getKey(alias, keystorePassword) instanceof PrivateKey privateKey)
+                        || !(keyStore.getCertificate(alias) instanceof X509Certificate certificate)) {
+                    continue;
+                }
+                if (!matchesAlgorithm(privateKey)) {
+                    logger.warn("Ignoring key {} in {}: not an {} key", alias, keystorePath, algorithm);
+                    continue;
+                }
+                
+                long notBefore = certificate.getNotBefore().getTime();
+                long notAfter = certificate.getNotAfter().getTime();
+                if (notAfter + retentionMillis < now) {
+                    continue;
+                }
+                verificationKeys.put(alias, certificate.getPublicKey());
+                if (notAfter > now) {
+                    signingKeys.add(new StoredKey(alias, privateKey, notBefore, notAfter));
+                }
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot load JWT keys from " + keystorePath, e);
+        }
+        
+        // Latest activation first, so the signing key is the first one already active
+        signingKeys.sort(Comparator.comparingLong(StoredKey::notBefore).reversed().thenComparing(StoredKey::kid));
+        return new KeySet(List.copyOf(signingKeys), Map.copyOf(verificationKeys), buildJwks(verificationKeys));
+    }
+    
+    private boolean matchesAlgorithm(PrivateKey privateKey) {
+        return algorithm == Algorithm.ES256 ? privateKey instanceof ECPrivateKey : privateKey instanceof EdECPrivateKey;
+    }
+    
+    private JwksDocument buildJwks(Map<String, PublicKey> verificationKeys) {
+        List<Map<String, Object>> keys = new ArrayList<>();
+        MessageDigest digest = sha256();
+        // Sorted so every node renders the same document and entity tag
+        for (String kid : new TreeSet<>(verificationKeys.keySet())) {
+            Map<String, Object> jwk = new LinkedHashMap<>(Jwks.builder().key(verificationKeys.get(kid)).id(kid).build());
+            jwk.put("use", "sig");
+            jwk.put("alg", algorithm.name());
+            keys.add(jwk);
+            // Every member, so a new key under a reused kid changes the tag too
+            new TreeMap<>(jwk).forEach((name, value) ->
+                    digest.update((name + '=' + value + '\n').getBytes(StandardCharsets.UTF_8)));
+            digest.update((byte) 0);
+        }
+        String etag = '"' + HexFormat.of().formatHex(digest.digest()) + '"';
+        return new JwksDocument(Map.of("keys", List.copyOf(keys)), etag);
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    private SignatureAlgorithm signatureAlgorithm() {
+        return algorithm == Algorithm.ES256 ? Jwts.SIG.ES256 : Jwts.SIG.EdDSA;
+    }
+    
+    private record StoredKey(String kid, PrivateKey privateKey, long notBefore, long notAfter) {
+    }
+    
+    private record KeySet(List<StoredKey> signingKeys, Map<String, PublicKey> verificationKeys, JwksDocument jwks) {
+        
+        StoredKey signingKey(long now) {
+            for (StoredKey key : signingKeys) {
+                if (key.notBefore() <= now && now < key.notAfter()) {
+                    return key;
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Pre-rendered JWKS body with the entity tag clients use for conditional requests.
+     */
+    public record JwksDocument(Map<String, Object> body, String etag) {
+    }
+}
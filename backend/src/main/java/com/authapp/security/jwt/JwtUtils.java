@@ -1,63 +1,189 @@
 package com.authapp.security.jwt;
 
+import com.authapp.security.RoleAuthorityRegistry;
+import com.authapp.security.UserPrincipal;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SecurityException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 
 @Component
 public class JwtUtils {
     
-    @Value("${app.jwt.secret:mySecretKeyForJWTAuthenticationThatIsLongEnoughToMeetRequirements}")
-    private String jwtSecret;
+    private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
     
-    @Value("${app.jwt.expiration:86400000}") // 24 hours
-    private long jwtExpiration;
+    static final String CLAIM_ROLES = "roles";
+    static final String CLAIM_PRIVILEGES = "privs";
+    static final String CLAIM_VERSION = "ver";
+    
+    private static final String ROLE_PREFIX = "ROLE_";
+    
+    private final long jwtExpiration;
+    private final boolean selfContained;
+    
+    private final JwtKeyRing keyRing;
+    private final RoleAuthorityRegistry roleAuthorityRegistry;
+    
+    // Immutable and thread-safe, so it is built once and shared by all requests;
+    // the key ring resolves the verification key per token
+    private final JwtParser jwtParser;
+    
+    public JwtUtils(JwtKeyRing keyRing,
+                    RoleAuthorityRegistry roleAuthorityRegistry,
+                    @Value("${app.jwt.expiration:900000}") long jwtExpiration, // 15 minutes
+                    @Value("${app.jwt.self-contained:true}") boolean selfContained) {
+        this.keyRing = keyRing;
+        this.roleAuthorityRegistry = roleAuthorityRegistry;
+        this.jwtExpiration = jwtExpiration;
+        this.selfContained = selfContained;
+        this.jwtParser = Jwts.parser()
+                .keyLocator(keyRing.keyLocator())
+                .build();
+    }
     
     public String generateJwtToken(Authentication authentication) {
         UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
+        if (selfContained && userPrincipal instanceof UserPrincipal principal) {
+            return generateTokenFromUsername(principal.getUsername(), principal.getAuthorities(),
+                    principal.getTokenVersion());
+        }
         return generateTokenFromUsername(userPrincipal.getUsername());
     }
     
     public String generateTokenFromUsername(String username) {
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(username)
                 .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSigningKey())
-                .compact();
+                .expiration(new Date(System.currentTimeMillis() + jwtExpiration));
+        return keyRing.sign(builder).compact();
     }
     
-    public String getUsernameFromJwtToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
+    /**
+     * Issues a self-contained token carrying the user's roles, privileges and token version,
+     * so bearer requests can be authenticated without loading the user.
+     */
+    public String generateTokenFromUsername(String username, Collection<? extends GrantedAuthority> authorities,
+                                            long tokenVersion) {
+        List<String> roles = new ArrayList<>();
+        List<String> privileges = new ArrayList<>();
+        for (GrantedAuthority authority : authorities) {
+            String name = authority.getAuthority();
+            if (name.startsWith(ROLE_PREFIX)) {
+                roles.add(name.substring(ROLE_PREFIX.length()));
+            } else {
+                privileges.add(name);
+            }
+        }
+        
+        JwtBuilder builder = Jwts.builder()
+                .id(UUID.randomUUID().toString())
+                .subject(username)
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_PRIVILEGES, privileges)
+                .claim(CLAIM_VERSION, tokenVersion)
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + jwtExpiration));
+        return keyRing.sign(builder).compact();
     }
     
-    public boolean validateJwtToken(String authToken) {
+    /**
+     * Rebuilds the principal from the claims of a verified self-contained token.
+     *
+     * @return the principal, or {@code null} if self-contained tokens are disabled or the token
+     *         was issued without authority claims
+     */
+    public UserPrincipal getPrincipalFromClaims(Claims claims) {
+        Object version = claims.get(CLAIM_VERSION);
+        if (!selfContained || !(version instanceof Number)) {
+            return null;
+        }
+        
+        // Known roles map to the shared authority lists; the privilege claim is only needed
+        // for roles this node has not loaded
+        Object roleClaim = claims.get(CLAIM_ROLES);
+        if (roleClaim instanceof List<?> roleNames && !roleNames.isEmpty()) {
+            RoleAuthorityRegistry.RoleAuthorities known = roleAuthorityRegistry.resolveByNames(roleNames);
+            if (known != null) {
+                return UserPrincipal.fromToken(claims.getSubject(), known.authorities(), known.privilegeMask(),
+                        ((Number) version).longValue());
+            }
+        }
+        
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        if (roleClaim instanceof List<?> roles) {
+            for (Object role : roles) {
+                authorities.add(new SimpleGrantedAuthority(ROLE_PREFIX + role));
+            }
+        }
+        long privilegeMask = 0L;
+        if (claims.get(CLAIM_PRIVILEGES) instanceof List<?> privileges) {
+            for (Object privilege : privileges) {
+                authorities.add(new SimpleGrantedAuthority(String.valueOf(privilege)));
+            }
+            privilegeMask = roleAuthorityRegistry.privilegeMask(privileges);
+        }
+        
+        return UserPrincipal.fromToken(claims.getSubject(), authorities, privilegeMask, ((Number) version).longValue());
+    }
+    
+    /**
+     * Verifies the signature and expiry of a token exactly once and returns its claims,
+     * or the reason it was rejected. Callers should use the returned claims instead of
+     * parsing the same token again.
+     */
+    public JwtValidationResult parseAndValidate(String token) {
+        if (!StringUtils.hasText(token)) {
+            return JwtValidationResult.EMPTY;
+        }
+        
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(authToken);
-            return true;
+            return JwtValidationResult.valid(jwtParser.parseSignedClaims(token).getPayload());
+        } catch (ExpiredJwtException e) {
+            logger.debug("JWT token is expired: {}", e.getMessage());
+            return JwtValidationResult.EXPIRED;
+        } catch (SecurityException e) {
+            logger.debug("Invalid JWT signature: {}", e.getMessage());
+            return JwtValidationResult.INVALID_SIGNATURE;
+        } catch (UnsupportedJwtException e) {
+            logger.debug("JWT token is unsupported: {}", e.getMessage());
+            return JwtValidationResult.UNSUPPORTED;
         } catch (JwtException | IllegalArgumentException e) {
-            // Log the exception
+            logger.debug("Invalid JWT token: {}", e.getMessage());
+            return JwtValidationResult.MALFORMED;
         }
-        return false;
     }
     
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = jwtSecret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    /**
+     * @return the raw token from an {@code Authorization: Bearer} header value, or {@code null}
+     */
+    public String extractBearerToken(String authorizationHeader) {
+        if (StringUtils.hasText(authorizationHeader) && authorizationHeader.startsWith("Bearer ")) {
+            return authorizationHeader.substring(7);
+        }
+        return null;
+    }
+    
+    public String getUsernameFromJwtToken(String token) {
+        return jwtParser.parseSignedClaims(token)
+                .getPayload()
+                .getSubject();
+    }
+    
+    public boolean validateJwtToken(String authToken) {
+        return parseAndValidate(authToken).isValid();
     }
 }
@@ -0,0 +1,57 @@
+package com.authapp.security.jwt;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Outcome of a single verify-and-parse pass over a bearer token: either the
+ * verified claims, or the reason the token was rejected.
+ */
+public final class JwtValidationResult {
+    
+    public enum Status {
+        VALID,
+        EMPTY,
+        EXPIRED,
+        INVALID_SIGNATURE,
+        MALFORMED,
+        UNSUPPORTED
+    }
+    
+    // Rejections carry no per-token state, so they are shared
+    static final JwtValidationResult EMPTY = new JwtValidationResult(Status.EMPTY, null);
+    static final JwtValidationResult EXPIRED = new JwtValidationResult(Status.EXPIRED, null);
+    static final JwtValidationResult INVALID_SIGNATURE = new JwtValidationResult(Status.INVALID_SIGNATURE, null);
+    static final JwtValidationResult MALFORMED = new JwtValidationResult(Status.MALFORMED, null);
+    static final JwtValidationResult UNSUPPORTED = new JwtValidationResult(Status.UNSUPPORTED, null);
+    
+    private final Status status;
+    private final Claims claims;
+    
+    private JwtValidationResult(Status status, Claims claims) {
+        this.status = status;
+        this.claims = claims;
+    }
+    
+    static JwtValidationResult valid(Claims claims) {
+        return new JwtValidationResult(Status.VALID, claims);
+    }
+    
+    public boolean isValid() {
+        return status == Status.VALID;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    /**
+     * @return the verified claims, or {@code null} when the token was rejected
+     */
+    public Claims getClaims() {
+        return claims;
+    }
+    
+    public String getUsername() {
+        return claims != null ? claims.getSubject() : null;
+    }
+}
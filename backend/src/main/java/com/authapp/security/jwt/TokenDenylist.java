@@ -0,0 +1,128 @@
+package com.authapp.security.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory denylist of revoked token ids ({@code jti}).
+ *
+ * Revoked ids are grouped into segments by the expiry time of their token. A lookup goes to the
+ * one segment matching the token's {@code exp}, checks that segment's Bloom filter and only
+ * consults the exact set on a Bloom hit. A segment is dropped as a whole once every token in it
+ * has expired, so memory tracks the number of logouts within one token lifetime.
+ */
+@Component
+public class TokenDenylist {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TokenDenylist.class);
+    
+    private final long bucketMillis;
+    private final int bloomBits;
+    private final int bloomHashes;
+    
+    private final ConcurrentHashMap<Long, Segment> segments = new ConcurrentHashMap<>();
+    
+    public TokenDenylist(@Value("${app.jwt.denylist.bucket-minutes:15}") long bucketMinutes,
+                         @Value("${app.jwt.denylist.expected-revocations-per-bucket:10000}") int expectedPerBucket,
+                         @Value("${app.jwt.denylist.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.bucketMillis = bucketMinutes * 60_000L;
+        
+        // Standard Bloom filter sizing: m = -n ln(p) / ln(2)^2, k = (m / n) ln(2)
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedPerBucket * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bloomBits = (int) Math.max(64, Math.min(bits, Integer.MAX_VALUE - 63));
+        this.bloomHashes = Math.max(1, (int) Math.round((double) bloomBits / expectedPerBucket * ln2));
+    }
+    
+    /**
+     * Revokes a token until its expiry; afterwards the entry is discarded automatically.
+     */
+    public void revoke(String tokenId, long expiresAtMillis) {
+        if (tokenId == null || expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        
+        segments.computeIfAbsent(expiresAtMillis / bucketMillis, bucket -> new Segment(bloomBits, bloomHashes))
+            .add(tokenId);
+    }
+    
+    public boolean isRevoked(String tokenId, long expiresAtMillis) {
+        if (tokenId == null || segments.isEmpty()) {
+            return false;
+        }
+        
+        Segment segment = segments.get(expiresAtMillis / bucketMillis);
+        return segment != null && segment.contains(tokenId);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.jwt.denylist.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        // A segment is safe to drop once the end of its bucket has passed
+        long currentBucket = System.currentTimeMillis() / bucketMillis;
+        if (segments.keySet().removeIf(bucket -> bucket < currentBucket)) {
+            logger.debug("Purged expired token denylist segments, {} remaining", segments.size());
+        }
+    }
+    
+    private static final class Segment {
+        
+        private final AtomicLongArray bloom;
+        private final int bits;
+        private final int hashes;
+        private final Set<String> exact = ConcurrentHashMap.newKeySet();
+        
+        Segment(int bits, int hashes) {
+            this.bloom = new AtomicLongArray((bits + 63) >>> 6);
+            this.bits = bits;
+            this.hashes = hashes;
+        }
+        
+        void add(String tokenId) {
+            // Exact entry first, so a concurrent reader that sees the Bloom bits also finds it
+            exact.add(tokenId);
+            long hash = hash64(tokenId);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                int word = bit >>> 6;
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = bloom.get(word);
+                } while ((current & mask) == 0 && !bloom.compareAndSet(word, current, current | mask));
+            }
+        }
+        
+        boolean contains(String tokenId) {
+            long hash = hash64(tokenId);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((bloom.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return exact.contains(tokenId);
+        }
+        
+        private static long hash64(String value) {
+            // 64-bit finalizer from MurmurHash3 over the string hash, split into two 32-bit hashes
+            long h = value.hashCode() * 0x9E3779B97F4A7C15L + value.length();
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
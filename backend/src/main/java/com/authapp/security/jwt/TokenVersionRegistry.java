@@ -0,0 +1,128 @@
+package com.authapp.security.jwt;
+
+import com.authapp.event.RoleModelChangedEvent;
+import com.authapp.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tracks the minimum token version still accepted per user.
+ *
+ * The persisted {@code users.token_version} is authoritative; this is a bounded cache of it, seeded
+ * at startup with every user whose version was ever bumped and loaded on a miss. A bump made on this
+ * node is seen at once, one made on another node once the entry expires. A token older than the
+ * current version is not trusted from its claims alone and the user is reloaded from the database
+ * instead.
+ */
+@Component
+public class TokenVersionRegistry {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TokenVersionRegistry.class);
+    
+    // Cached for usernames with no user, so tokens naming them are never trusted from their claims
+    private static final long UNKNOWN_USER = Long.MAX_VALUE;
+    
+    private final UserRepository userRepository;
+    private final TransactionTemplate writeTransaction;
+    private final LoadingCache<String, Long> currentVersions;
+    private final int maxUsers;
+    
+    public TokenVersionRegistry(UserRepository userRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.jwt.token-version.max-users:100000}") int maxUsers,
+                                @Value("${app.jwt.token-version.refresh-seconds:30}") long refreshSeconds) {
+        this.userRepository = userRepository;
+        // Runs after the changing transaction has committed, where it needs its own transaction
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxUsers = maxUsers;
+        this.currentVersions = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofSeconds(refreshSeconds))
+                .build(username -> userRepository.findTokenVersionByUsername(username).orElse(UNKNOWN_USER));
+    }
+    
+    public boolean isStale(String username, long tokenVersion) {
+        return tokenVersion < currentVersions.get(username);
+    }
+    
+    /**
+     * Records a version already written to {@code users.token_version}.
+     */
+    public void bump(String username, long newVersion) {
+        currentVersions.asMap().merge(username, newVersion, Math::max);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        List<UserRepository.UserTokenVersion> versions =
+                userRepository.findBumpedTokenVersions(PageRequest.of(0, maxUsers));
+        for (UserRepository.UserTokenVersion version : versions) {
+            bump(version.getUsername(), version.getTokenVersion());
+        }
+        if (!versions.isEmpty()) {
+            logger.info("Seeded token versions for {} users", versions.size());
+        }
+    }
+    
+    /**
+     * Tokens carry privileges resolved through the role model, so a change to it outdates them all.
+     * One edit publishes an event per entity and collection it touches; they share a single bump
+     * once the transaction commits. A change found by the periodic reload was already bumped by the
+     * node that made it, so only the cached versions are dropped.
+     */
+    @EventListener
+    public void onRoleModelChanged(RoleModelChangedEvent event) {
+        if (event.detectedByReload()) {
+            currentVersions.invalidateAll();
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bumpAll();
+            return;
+        }
+        boolean pending = TransactionSynchronizationManager.getSynchronizations().stream()
+                .anyMatch(BumpAllOnCommit.class::isInstance);
+        if (!pending) {
+            TransactionSynchronizationManager.registerSynchronization(new BumpAllOnCommit());
+        }
+    }
+    
+    private void bumpAll() {
+        writeTransaction.executeWithoutResult(status -> userRepository.incrementAllTokenVersions());
+        currentVersions.invalidateAll();
+    }
+    
+    /**
+     * Runs in the after-commit step, ahead of the after-completion listeners such as the user
+     * details cache, so users reloaded from then on carry the new version.
+     */
+    private final class BumpAllOnCommit implements TransactionSynchronization {
+        
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+        
+        @Override
+        public void afterCommit() {
+            bumpAll();
+        }
+    }
+}
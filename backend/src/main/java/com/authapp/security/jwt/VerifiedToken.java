@@ -0,0 +1,13 @@
+package com.authapp.security.jwt;
+
+import com.authapp.security.UserPrincipal;
+
+/**
+ * A bearer token that passed verification, with the principal resolved for it.
+ *
+ * @param principal       the authenticated user
+ * @param tokenId         the token's {@code jti}, or {@code null} for tokens issued without one
+ * @param expiresAtMillis the token's {@code exp} in epoch milliseconds
+ */
+public record VerifiedToken(UserPrincipal principal, String tokenId, long expiresAtMillis) {
+}
@@ -0,0 +1,94 @@
+package com.authapp.security.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size-bounded cache of bearer tokens that already passed signature verification, keyed by the
+ * SHA-256 digest of the token and mapped to the principal and token id resolved for it.
+ *
+ * Each entry expires when the token's own {@code exp} passes, so a hit never extends a token's
+ * lifetime. Hit, miss and eviction counts are published as {@code cache.*} metrics under the
+ * name {@code jwt.verified-tokens}.
+ */
+@Component
+public class VerifiedTokenCache {
+    
+    private static final String CACHE_NAME = "jwt.verified-tokens";
+    
+    private final Cache<ByteBuffer, VerifiedToken> cache;
+    
+    public VerifiedTokenCache(@Value("${app.jwt.cache.enabled:true}") boolean enabled,
+                              @Value("${app.jwt.cache.max-size:10000}") long maxSize,
+                              MeterRegistry meterRegistry) {
+        if (!enabled) {
+            this.cache = null;
+            return;
+        }
+        
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+    
+    /**
+     * @return the verified token cached for this bearer value, or {@code null} on a miss or when the cache is disabled
+     */
+    public VerifiedToken get(String token) {
+        return cache != null ? cache.getIfPresent(digest(token)) : null;
+    }
+    
+    public void put(String token, VerifiedToken verifiedToken) {
+        if (cache != null) {
+            cache.put(digest(token), verifiedToken);
+        }
+    }
+    
+    public void invalidate(String token) {
+        if (cache != null) {
+            cache.invalidate(digest(token));
+        }
+    }
+    
+    private static ByteBuffer digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    private static class TokenExpiry implements Expiry<ByteBuffer, VerifiedToken> {
+        
+        @Override
+        public long expireAfterCreate(ByteBuffer key, VerifiedToken value, long currentTime) {
+            long remainingMillis = value.expiresAtMillis() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+        }
+        
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+        
+        @Override
+        public long expireAfterRead(ByteBuffer key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
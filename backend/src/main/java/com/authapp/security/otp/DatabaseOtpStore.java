@@ -0,0 +1,70 @@
+package com.authapp.security.otp;
+
+import com.authapp.model.OtpChallenge;
+import com.authapp.repository.OtpChallengeRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+
+/**
+ * {@link OtpStore} on the {@code otp_challenges} table, for deployments where the node that sends a
+ * code is not necessarily the one that checks it. Attempts are counted and codes consumed with
+ * conditional updates, so concurrent checks cannot use a code twice. Expired rows are deleted in
+ * the background through the index on {@code expires_at}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.2fa.otp.store", havingValue = "database")
+public class DatabaseOtpStore implements OtpStore {
+    
+    private final OtpChallengeRepository otpChallengeRepository;
+    private final TransactionTemplate writeTransaction;
+    
+    public DatabaseOtpStore(OtpChallengeRepository otpChallengeRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.otpChallengeRepository = otpChallengeRepository;
+        // Used attempts must stick even when the caller's transaction rolls back on a wrong code
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    
+    @Override
+    public void put(long userId, byte[] codeHash, long expiresAtMillis, int maxAttempts) {
+        writeTransaction.executeWithoutResult(status -> {
+            otpChallengeRepository.deleteByUserId(userId);
+            otpChallengeRepository.save(new OtpChallenge(userId, HexFormat.of().formatHex(codeHash),
+                    toLocalDateTime(expiresAtMillis), maxAttempts));
+        });
+    }
+    
+    @Override
+    public boolean verify(long userId, byte[] codeHash, long nowMillis) {
+        String hash = HexFormat.of().formatHex(codeHash);
+        Boolean verified = writeTransaction.execute(status ->
+                otpChallengeRepository.takeAttempt(userId, toLocalDateTime(nowMillis)) > 0
+                        && otpChallengeRepository.consume(userId, hash) > 0);
+        return Boolean.TRUE.equals(verified);
+    }
+    
+    @Override
+    public void remove(long userId) {
+        writeTransaction.executeWithoutResult(status -> otpChallengeRepository.deleteByUserId(userId));
+    }
+    
+    @Scheduled(fixedDelayString = "${app.2fa.otp.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        writeTransaction.executeWithoutResult(status ->
+                otpChallengeRepository.deleteExpired(LocalDateTime.now()));
+    }
+    
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,132 @@
+package com.authapp.security.otp;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-node {@link OtpStore}. Challenges are held in a map keyed by user and also filed in a
+ * hashed timing wheel under the tick they expire in. Each tick only the entries in that tick's slot
+ * are looked at, so expiry never scans the whole store. Verification is a map lookup, an atomic
+ * decrement and a constant-time comparison, and every challenge takes the same fixed amount of
+ * memory.
+ */
+@Component
+@ConditionalOnProperty(name = "app.2fa.otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+    
+    private final ConcurrentHashMap<Long, Challenge> challenges = new ConcurrentHashMap<>();
+    private final Queue<Challenge>[] wheel;
+    private final long tickMillis;
+    
+    // Only read and written by the scheduled expiry run
+    private long lastTick = -1;
+    
+    @SuppressWarnings("unchecked")
+    public InMemoryOtpStore(@Value("${app.2fa.otp.wheel-slots:512}") int slots,
+                            @Value("${app.2fa.otp.wheel-tick-ms:1000}") long tickMillis) {
+        this.tickMillis = tickMillis;
+        this.wheel = new Queue[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+    
+    @Override
+    public void put(long userId, byte[] codeHash, long expiresAtMillis, int maxAttempts) {
+        Challenge challenge = new Challenge(userId, codeHash.clone(), expiresAtMillis, maxAttempts);
+        // A replaced challenge stays in its slot until then; removing it by value is a no-op
+        challenges.put(userId, challenge);
+        slot(Math.ceilDiv(expiresAtMillis, tickMillis)).add(challenge);
+    }
+    
+    @Override
+    public boolean verify(long userId, byte[] codeHash, long nowMillis) {
+        Challenge challenge = challenges.get(userId);
+        if (challenge == null) {
+            return false;
+        }
+        if (challenge.expiresAtMillis <= nowMillis) {
+            challenges.remove(userId, challenge);
+            return false;
+        }
+        
+        int attemptsBefore = challenge.attemptsLeft.getAndDecrement();
+        if (attemptsBefore <= 0) {
+            challenges.remove(userId, challenge);
+            return false;
+        }
+        if (!MessageDigest.isEqual(challenge.codeHash, codeHash)) {
+            if (attemptsBefore == 1) {
+                challenges.remove(userId, challenge);
+            }
+            return false;
+        }
+        // Single use: only the caller that removes it succeeds
+        return challenges.remove(userId, challenge);
+    }
+    
+    @Override
+    public void remove(long userId) {
+        challenges.remove(userId);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.2fa.otp.wheel-tick-ms:1000}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        long currentTick = Math.floorDiv(now, tickMillis);
+        // Catch up on every tick since the last run, but never more than one turn of the wheel
+        long fromTick = lastTick < 0 ? currentTick : Math.max(lastTick + 1, currentTick - wheel.length + 1);
+        for (long tick = fromTick; tick <= currentTick; tick++) {
+            expireSlot(slot(tick), now);
+        }
+        lastTick = currentTick;
+    }
+    
+    private void expireSlot(Queue<Challenge> slot, long now) {
+        List<Challenge> notDue = null;
+        Challenge challenge;
+        while ((challenge = slot.poll()) != null) {
+            if (challenge.expiresAtMillis <= now) {
+                challenges.remove(challenge.userId, challenge);
+            } else {
+                // Expires on a later turn of the wheel
+                if (notDue == null) {
+                    notDue = new ArrayList<>();
+                }
+                notDue.add(challenge);
+            }
+        }
+        if (notDue != null) {
+            slot.addAll(notDue);
+        }
+    }
+    
+    private Queue<Challenge> slot(long tick) {
+        return wheel[(int) Math.floorMod(tick, (long) wheel.length)];
+    }
+    
+    private static final class Challenge {
+        
+        private final long userId;
+        private final byte[] codeHash;
+        private final long expiresAtMillis;
+        private final AtomicInteger attemptsLeft;
+        
+        Challenge(long userId, byte[] codeHash, long expiresAtMillis, int maxAttempts) {
+            this.userId = userId;
+            this.codeHash = codeHash;
+            this.expiresAtMillis = expiresAtMillis;
+            this.attemptsLeft = new AtomicInteger(maxAttempts);
+        }
+    }
+}
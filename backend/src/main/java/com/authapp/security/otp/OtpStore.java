@@ -0,0 +1,21 @@
+package com.authapp.security.otp;
+
+/**
+ * Outstanding one-time codes sent by SMS or email, at most one per user. Only a hash of each code
+ * is stored. A challenge is gone once it is used, expires or runs out of attempts.
+ */
+public interface OtpStore {
+    
+    /**
+     * Stores a new challenge for the user, replacing any earlier one.
+     */
+    void put(long userId, byte[] codeHash, long expiresAtMillis, int maxAttempts);
+    
+    /**
+     * Uses up one attempt and, if the hash matches, consumes the challenge. Of concurrent calls
+     * with the right code, only one succeeds.
+     */
+    boolean verify(long userId, byte[] codeHash, long nowMillis);
+    
+    void remove(long userId);
+}
@@ -0,0 +1,102 @@
+package com.authapp.security.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive limit on concurrent credential checks, adjusted by AIMD on observed latency.
+ *
+ * Every call that completes within the latency threshold while the limiter is at least half used
+ * raises the limit by one. A slower call multiplies it by the backoff ratio. Calls over the limit
+ * are rejected at once, so excess load is shed instead of queueing behind the password hashing
+ * threads. A share of the limit is reserved for priority calls, such as a login's second step
+ * after the password was already accepted.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+    
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double reservedFraction;
+    private final long latencyThresholdNanos;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    
+    private final Counter shedCounter;
+    
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${app.security.login-limiter.enabled:true}") boolean enabled,
+                                      @Value("${app.security.login-limiter.initial-limit:0}") int initialLimit,
+                                      @Value("${app.security.login-limiter.min-limit:1}") int minLimit,
+                                      @Value("${app.security.login-limiter.max-limit:200}") int maxLimit,
+                                      @Value("${app.security.login-limiter.backoff-ratio:0.9}") double backoffRatio,
+                                      @Value("${app.security.login-limiter.priority-reserve:0.2}") double reservedFraction,
+                                      @Value("${app.security.login-limiter.latency-threshold-ms:500}") long latencyThresholdMillis) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.reservedFraction = reservedFraction;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        // Password hashing is CPU bound, so start from the core count
+        int initial = initialLimit > 0 ? initialLimit : Runtime.getRuntime().availableProcessors();
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initial));
+        
+        Gauge.builder("login.limiter.limit", this, limiter -> limiter.limit).register(meterRegistry);
+        Gauge.builder("login.limiter.in-flight", inFlight, AtomicInteger::get).register(meterRegistry);
+        this.shedCounter = Counter.builder("login.limiter.shed")
+                .description("Logins rejected because the concurrency limit was reached")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Takes a slot, or sheds the call with {@link ServiceOverloadedException}. The returned start time
+     * must be passed to {@link #release(long)} when the call finishes, whatever its outcome.
+     */
+    public long acquire(boolean priority) {
+        if (!enabled) {
+            return System.nanoTime();
+        }
+        
+        double currentLimit = limit;
+        int allowed = priority
+                ? (int) currentLimit
+                : Math.max(1, (int) (currentLimit * (1 - reservedFraction)));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                shedCounter.increment();
+                throw new ServiceOverloadedException("Service is busy. Please try again shortly.", 1);
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return System.nanoTime();
+            }
+        }
+    }
+    
+    public void release(long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        
+        long latency = System.nanoTime() - startNanos;
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (latency > latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (current * 2 >= limit) {
+                // Only grow when the limit is actually being used
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+    }
+}
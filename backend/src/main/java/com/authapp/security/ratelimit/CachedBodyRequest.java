@@ -0,0 +1,90 @@
+package com.authapp.security.ratelimit;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads up to a limit of the request body ahead of the controller, then replays it. A body larger
+ * than the limit is replayed in full: the buffered prefix, then the rest of the original stream.
+ */
+class CachedBodyRequest extends HttpServletRequestWrapper {
+    
+    private final byte[] prefix;
+    private final boolean complete;
+    
+    CachedBodyRequest(HttpServletRequest request, int limit) throws IOException {
+        super(request);
+        byte[] read = request.getInputStream().readNBytes(limit + 1);
+        this.complete = read.length <= limit;
+        this.prefix = read;
+    }
+    
+    /**
+     * @return the whole body, or {@code null} if it is longer than the limit
+     */
+    byte[] getBody() {
+        return complete ? prefix : null;
+    }
+    
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        ByteArrayInputStream buffered = new ByteArrayInputStream(prefix);
+        ServletInputStream remainder = complete ? null : super.getInputStream();
+        return new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                int b = buffered.read();
+                return b != -1 || remainder == null ? b : remainder.read();
+            }
+            
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = buffered.read(b, off, len);
+                return n != -1 || remainder == null ? n : remainder.read(b, off, len);
+            }
+            
+            @Override
+            public boolean isFinished() {
+                return buffered.available() == 0 && (remainder == null || remainder.isFinished());
+            }
+            
+            @Override
+            public boolean isReady() {
+                return buffered.available() > 0 || remainder == null || remainder.isReady();
+            }
+            
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                if (remainder != null) {
+                    // Reading the buffered prefix never blocks, so the wrapped stream drives the callbacks
+                    remainder.setReadListener(readListener);
+                    return;
+                }
+                try {
+                    if (buffered.available() > 0) {
+                        readListener.onDataAvailable();
+                    }
+                    readListener.onAllDataRead();
+                } catch (IOException e) {
+                    readListener.onError(e);
+                }
+            }
+        };
+    }
+    
+    @Override
+    public BufferedReader getReader() throws IOException {
+        String encoding = getCharacterEncoding();
+        Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+}
@@ -0,0 +1,152 @@
+package com.authapp.security.ratelimit;
+
+import com.authapp.util.ClientIpResolver;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits login and 2FA verification requests before any password or code is checked.
+ *
+ * A request must get a token from its client IP's bucket, then its username's bucket, then the
+ * global bucket. The first empty bucket answers 429 with a {@code Retry-After} header. The username
+ * is read from the JSON body, which is buffered and replayed to the controller. A body too large to
+ * buffer is rejected with 413, so padding cannot hide the username from its limit.
+ */
+@Component
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+    
+    private static final int MAX_BODY_BYTES = 4096;
+    
+    private final boolean enabled;
+    private final RateLimiter byIp;
+    private final RateLimiter byUsername;
+    private final RateLimiter global;
+    private final ObjectMapper objectMapper;
+    
+    private final Counter ipRejections;
+    private final Counter usernameRejections;
+    private final Counter globalRejections;
+    private final Counter tooLargeRejections;
+    
+    public LoginRateLimitFilter(ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.security.rate-limit.enabled:true}") boolean enabled,
+                                @Value("${app.security.rate-limit.max-keys:100000}") long maxKeys,
+                                @Value("${app.security.rate-limit.ip.capacity:20}") int ipCapacity,
+                                @Value("${app.security.rate-limit.ip.per-minute:20}") int ipPerMinute,
+                                @Value("${app.security.rate-limit.username.capacity:5}") int usernameCapacity,
+                                @Value("${app.security.rate-limit.username.per-minute:5}") int usernamePerMinute,
+                                @Value("${app.security.rate-limit.global.capacity:200}") int globalCapacity,
+                                @Value("${app.security.rate-limit.global.per-minute:6000}") int globalPerMinute) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.byIp = new RateLimiter(ipCapacity, ipPerMinute, maxKeys);
+        this.byUsername = new RateLimiter(usernameCapacity, usernamePerMinute, maxKeys);
+        this.global = new RateLimiter(globalCapacity, globalPerMinute, 1);
+        
+        this.ipRejections = rejections(meterRegistry, "ip");
+        this.usernameRejections = rejections(meterRegistry, "username");
+        this.globalRejections = rejections(meterRegistry, "global");
+        this.tooLargeRejections = rejections(meterRegistry, "body-size");
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || !isLimitedPath(request.getRequestURI());
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long waitNanos = byIp.tryAcquire(ClientIpResolver.resolve(request));
+        if (waitNanos > 0) {
+            reject(response, waitNanos, ipRejections);
+            return;
+        }
+        
+        if (request.getContentLengthLong() > MAX_BODY_BYTES) {
+            rejectTooLarge(response);
+            return;
+        }
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request, MAX_BODY_BYTES);
+        byte[] body = cachedRequest.getBody();
+        if (body == null) {
+            // Chunked bodies carry no length up front
+            rejectTooLarge(response);
+            return;
+        }
+        
+        String username = extractUsername(body);
+        if (username != null) {
+            waitNanos = byUsername.tryAcquire(username);
+            if (waitNanos > 0) {
+                reject(response, waitNanos, usernameRejections);
+                return;
+            }
+        }
+        
+        waitNanos = global.tryAcquire();
+        if (waitNanos > 0) {
+            reject(response, waitNanos, globalRejections);
+            return;
+        }
+        
+        filterChain.doFilter(cachedRequest, response);
+    }
+    
+    static boolean isLimitedPath(String uri) {
+        return uri.endsWith("/api/auth/login") || uri.endsWith("/api/v2/auth/login")
+                || uri.endsWith("/api/auth/2fa/verify");
+    }
+    
+    private String extractUsername(byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+        try {
+            JsonNode username = objectMapper.readTree(body).get("username");
+            // Numbers and booleans are bound to the String field too, so they count as the username
+            return username != null && username.isValueNode() && !username.isNull() ? username.asText() : null;
+        } catch (IOException e) {
+            // Malformed bodies are rejected by the controller; only the IP and global limits apply
+            return null;
+        }
+    }
+    
+    private static void reject(HttpServletResponse response, long waitNanos, Counter rejections) throws IOException {
+        rejections.increment();
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType("text/plain");
+        response.getWriter().write("Too many login attempts. Please try again later.");
+    }
+    
+    private void rejectTooLarge(HttpServletResponse response) throws IOException {
+        tooLargeRejections.increment();
+        response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+        response.setContentType("text/plain");
+        response.getWriter().write("Login request body is too large.");
+    }
+    
+    private static Counter rejections(MeterRegistry meterRegistry, String scope) {
+        return Counter.builder("login.rate-limit.rejected")
+                .description("Login requests rejected by the rate limiter")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,110 @@
+package com.authapp.security.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token buckets implemented with the generic cell rate algorithm (GCRA).
+ *
+ * A bucket is a single "theoretical arrival time" updated with compare-and-set, so an acquire is a
+ * constant number of atomic operations and never blocks. Keyed buckets live in a bounded cache and
+ * are dropped once they have been idle long enough to be full again. The unkeyed bucket is striped
+ * across several cells, each with an equal share of the rate and of the burst (the remainder going
+ * to the first cells), so one shared limit does not make every request contend on one variable. A
+ * request starts at a random cell and tries the others before it is refused, so the shared limit is
+ * not reached early while some cells still hold tokens.
+ */
+public class RateLimiter {
+    
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final Cache<String, AtomicLong> buckets;
+    
+    private final AtomicLongArray stripes;
+    private final long stripeEmissionIntervalNanos;
+    private final long[] stripeBurstToleranceNanos;
+    
+    /**
+     * @param capacity        requests allowed in a burst
+     * @param refillPerMinute sustained requests per minute
+     * @param maxKeys         keyed buckets kept at most
+     */
+    public RateLimiter(int capacity, int refillPerMinute, long maxKeys) {
+        this.emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, refillPerMinute);
+        this.burstToleranceNanos = emissionIntervalNanos * (Math.max(1, capacity) - 1);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos(emissionIntervalNanos + burstToleranceNanos))
+                .build();
+        
+        int stripeCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), capacity));
+        this.stripes = new AtomicLongArray(stripeCount);
+        this.stripeEmissionIntervalNanos = emissionIntervalNanos * stripeCount;
+        this.stripeBurstToleranceNanos = new long[stripeCount];
+        int burst = Math.max(1, capacity);
+        for (int i = 0; i < stripeCount; i++) {
+            int stripeCapacity = burst / stripeCount + (i < burst % stripeCount ? 1 : 0);
+            stripeBurstToleranceNanos[i] = stripeEmissionIntervalNanos * (stripeCapacity - 1);
+        }
+    }
+    
+    /**
+     * Takes a token from the key's bucket.
+     *
+     * @return {@code 0} if allowed, otherwise nanoseconds until a token is available
+     */
+    public long tryAcquire(String key) {
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong());
+        long now = System.nanoTime();
+        while (true) {
+            long stored = bucket.get();
+            long tat = stored == 0 ? now : Math.max(stored, now);
+            long wait = tat - now - burstToleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(stored, tat + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * Takes a token from the shared, striped bucket.
+     *
+     * @return {@code 0} if allowed, otherwise nanoseconds until a token is available
+     */
+    public long tryAcquire() {
+        int first = ThreadLocalRandom.current().nextInt(stripes.length());
+        long now = System.nanoTime();
+        long shortestWait = Long.MAX_VALUE;
+        for (int i = 0; i < stripes.length(); i++) {
+            long wait = tryAcquireStripe((first + i) % stripes.length(), now);
+            if (wait == 0) {
+                return 0;
+            }
+            shortestWait = Math.min(shortestWait, wait);
+        }
+        return shortestWait;
+    }
+    
+    private long tryAcquireStripe(int stripe, long now) {
+        while (true) {
+            long stored = stripes.get(stripe);
+            long tat = stored == 0 ? now : Math.max(stored, now);
+            long wait = tat - now - stripeBurstToleranceNanos[stripe];
+            if (wait > 0) {
+                return wait;
+            }
+            if (stripes.compareAndSet(stripe, stored, tat + stripeEmissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
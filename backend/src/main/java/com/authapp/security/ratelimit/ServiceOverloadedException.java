@@ -0,0 +1,19 @@
+package com.authapp.security.ratelimit;
+
+/**
+ * Thrown when a request is shed because the service is at its concurrency limit. Callers should
+ * answer 503 and must not count it as a failed login.
+ */
+public class ServiceOverloadedException extends RuntimeException {
+    
+    private final long retryAfterSeconds;
+    
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,42 @@
+package com.authapp.security.risk;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Repeated failures for one username. Past the lockout threshold the attempt is denied outright.
+ */
+@Component
+public class FailureVelocityRule implements RiskRule {
+    
+    @Value("${app.security.risk.failure-velocity.warn-threshold:3}")
+    private long warnThreshold;
+    
+    @Value("${app.security.risk.failure-velocity.high-threshold:5}")
+    private long highThreshold;
+    
+    @Value("${app.security.max-failed-attempts:5}")
+    private long maxFailedAttempts;
+    
+    @Override
+    public String getName() {
+        return "failure-velocity";
+    }
+    
+    @Override
+    public int score(RiskFeatures features) {
+        int score = 0;
+        if (features.failedByUsername() > warnThreshold) {
+            score += 30;
+        }
+        if (features.failedByUsername() > highThreshold) {
+            score += 20;
+        }
+        return score;
+    }
+    
+    @Override
+    public boolean denies(RiskFeatures features) {
+        return features.failedByUsername() > maxFailedAttempts;
+    }
+}
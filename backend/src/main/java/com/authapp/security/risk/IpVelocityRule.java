@@ -0,0 +1,32 @@
+package com.authapp.security.risk;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Repeated failures from one IP address, across any usernames.
+ */
+@Component
+public class IpVelocityRule implements RiskRule {
+    
+    @Value("${app.security.risk.ip-velocity.warn-threshold:10}")
+    private long warnThreshold;
+    
+    @Value("${app.security.risk.ip-velocity.deny-threshold:20}")
+    private long denyThreshold;
+    
+    @Override
+    public String getName() {
+        return "ip-velocity";
+    }
+    
+    @Override
+    public int score(RiskFeatures features) {
+        return features.failedByIp() > warnThreshold ? 30 : 0;
+    }
+    
+    @Override
+    public boolean denies(RiskFeatures features) {
+        return features.failedByIp() > denyThreshold;
+    }
+}
@@ -0,0 +1,76 @@
+package com.authapp.security.risk;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Remembers the last few user agents each user has logged in with successfully. Only hashes are
+ * kept, in a fixed-size slot array per user, and idle users are evicted.
+ */
+@Component
+public class KnownDeviceRegistry {
+    
+    private static final int DEVICES_PER_USER = 5;
+    
+    private final Cache<String, long[]> devices;
+    
+    public KnownDeviceRegistry(@Value("${app.security.risk.new-device.max-users:100000}") long maxUsers,
+                               @Value("${app.security.risk.new-device.retention-days:90}") long retentionDays) {
+        this.devices = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(Duration.ofDays(retentionDays))
+                .build();
+    }
+    
+    /**
+     * @return {@code true} if the user has known devices and this user agent is not one of them;
+     *         a user with no history is not treated as on a new device
+     */
+    public boolean isNewDevice(String username, String userAgent) {
+        long[] known = devices.getIfPresent(username);
+        if (known == null) {
+            return false;
+        }
+        
+        long hash = hash(userAgent);
+        synchronized (known) {
+            for (int i = 0; i < DEVICES_PER_USER; i++) {
+                if (known[i] == hash) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    public void recordLogin(String username, String userAgent) {
+        long[] known = devices.get(username, k -> new long[DEVICES_PER_USER + 1]);
+        long hash = hash(userAgent);
+        synchronized (known) {
+            // The last slot is the write cursor; zero marks an empty slot
+            for (int i = 0; i < DEVICES_PER_USER; i++) {
+                if (known[i] == hash) {
+                    return;
+                }
+            }
+            int next = (int) known[DEVICES_PER_USER];
+            known[next] = hash;
+            known[DEVICES_PER_USER] = (next + 1) % DEVICES_PER_USER;
+        }
+    }
+    
+    private static long hash(String userAgent) {
+        if (userAgent == null) {
+            return 1;
+        }
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < userAgent.length(); i++) {
+            h = (h ^ userAgent.charAt(i)) * 0x100000001B3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,24 @@
+package com.authapp.security.risk;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * A login from a user agent the user has not logged in with before.
+ */
+@Component
+public class NewDeviceRule implements RiskRule {
+    
+    @Value("${app.security.risk.new-device.score:15}")
+    private int score;
+    
+    @Override
+    public String getName() {
+        return "new-device";
+    }
+    
+    @Override
+    public int score(RiskFeatures features) {
+        return features.newDevice() ? score : 0;
+    }
+}
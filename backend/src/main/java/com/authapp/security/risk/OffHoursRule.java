@@ -0,0 +1,34 @@
+package com.authapp.security.risk;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * A login outside normal hours, in server local time. The range may wrap past midnight.
+ */
+@Component
+public class OffHoursRule implements RiskRule {
+    
+    @Value("${app.security.risk.off-hours.start:0}")
+    private int startHour;
+    
+    @Value("${app.security.risk.off-hours.end:5}")
+    private int endHour;
+    
+    @Value("${app.security.risk.off-hours.score:10}")
+    private int score;
+    
+    @Override
+    public String getName() {
+        return "off-hours";
+    }
+    
+    @Override
+    public int score(RiskFeatures features) {
+        int hour = features.hourOfDay();
+        boolean offHours = startHour <= endHour
+                ? hour >= startHour && hour < endHour
+                : hour >= startHour || hour < endHour;
+        return offHours ? score : 0;
+    }
+}
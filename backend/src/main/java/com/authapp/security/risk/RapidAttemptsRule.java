@@ -0,0 +1,24 @@
+package com.authapp.security.risk;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Many attempts of any outcome for one username within a few minutes.
+ */
+@Component
+public class RapidAttemptsRule implements RiskRule {
+    
+    @Value("${app.security.risk.rapid-attempts.threshold:5}")
+    private long threshold;
+    
+    @Override
+    public String getName() {
+        return "rapid-attempts";
+    }
+    
+    @Override
+    public int score(RiskFeatures features) {
+        return features.recentByUsername() > threshold ? 20 : 0;
+    }
+}
@@ -0,0 +1,15 @@
+package com.authapp.security.risk;
+
+/**
+ * Outcome of evaluating every rule against one login attempt.
+ *
+ * @param score    combined score, capped at 100 and stored with the attempt
+ * @param denied   whether a rule rejected the attempt
+ * @param deniedBy name of the first rule that rejected it, or {@code null}
+ */
+public record RiskAssessment(int score, boolean denied, String deniedBy) {
+    
+    public boolean isSuspicious(int threshold) {
+        return score > threshold;
+    }
+}
@@ -0,0 +1,47 @@
+package com.authapp.security.risk;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates all {@link RiskRule} beans against a login's {@link RiskFeatures}. Every rule
+ * contributes to the score, even after one has denied the attempt, so the stored score is complete.
+ */
+@Component
+public class RiskEngine {
+    
+    private static final int MAX_SCORE = 100;
+    
+    private final RiskRule[] rules;
+    private final Timer[] timers;
+    
+    public RiskEngine(List<RiskRule> rules, MeterRegistry meterRegistry) {
+        this.rules = rules.toArray(new RiskRule[0]);
+        this.timers = new Timer[this.rules.length];
+        for (int i = 0; i < this.rules.length; i++) {
+            timers[i] = Timer.builder("login.risk.rule")
+                    .description("Time to evaluate one risk rule")
+                    .tag("rule", this.rules[i].getName())
+                    .register(meterRegistry);
+        }
+    }
+    
+    public RiskAssessment evaluate(RiskFeatures features) {
+        int score = 0;
+        String deniedBy = null;
+        for (int i = 0; i < rules.length; i++) {
+            long start = System.nanoTime();
+            RiskRule rule = rules[i];
+            score += rule.score(features);
+            if (deniedBy == null && rule.denies(features)) {
+                deniedBy = rule.getName();
+            }
+            timers[i].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return new RiskAssessment(Math.min(score, MAX_SCORE), deniedBy != null, deniedBy);
+    }
+}
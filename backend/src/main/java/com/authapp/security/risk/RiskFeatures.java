@@ -0,0 +1,14 @@
+package com.authapp.security.risk;
+
+/**
+ * Everything the risk rules look at for one login attempt, computed once before any rule runs.
+ *
+ * @param failedByUsername failed attempts for the username in the fraud detection window
+ * @param failedByIp       estimated failed attempts from the IP address in the same window
+ * @param recentByUsername attempts of any outcome for the username in the last few minutes
+ * @param newDevice        whether the user has logged in before, but never from this user agent
+ * @param hourOfDay        local hour the attempt was made, 0 to 23
+ */
+public record RiskFeatures(long failedByUsername, long failedByIp, long recentByUsername,
+                           boolean newDevice, int hourOfDay) {
+}
@@ -0,0 +1,22 @@
+package com.authapp.security.risk;
+
+/**
+ * One contribution to the risk of a login attempt. Implementations are Spring beans picked up by
+ * {@link RiskEngine}; they read primitive features only and must not allocate.
+ */
+public interface RiskRule {
+    
+    String getName();
+    
+    /**
+     * @return points added to the attempt's risk score
+     */
+    int score(RiskFeatures features);
+    
+    /**
+     * @return whether the attempt must be rejected before the credentials are checked
+     */
+    default boolean denies(RiskFeatures features) {
+        return false;
+    }
+}
@@ -3,13 +3,22 @@ package com.authapp.service;
 import com.authapp.dto.LoginRequest;
 import com.authapp.dto.LoginResponse;
 import com.authapp.dto.RegisterRequest;
-import com.authapp.model.Privilege;
 import com.authapp.model.Role;
 import com.authapp.model.User;
 import com.authapp.repository.RoleRepository;
 import com.authapp.repository.UserRepository;
+import com.authapp.security.RoleAuthorityRegistry;
+import com.authapp.security.TwoFactorChallengeTokens;
+import com.authapp.security.UserPrincipal;
 import com.authapp.security.auth.AuthenticationStrategy;
 import com.authapp.security.jwt.JwtUtils;
+import com.authapp.security.jwt.JwtValidationResult;
+import com.authapp.security.jwt.TokenDenylist;
+import com.authapp.security.jwt.VerifiedTokenCache;
+import com.authapp.security.ratelimit.AdaptiveConcurrencyLimiter;
+import com.authapp.security.ratelimit.ServiceOverloadedException;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -20,7 +29,11 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Service
 public class AuthenticationService {
@@ -49,108 +62,226 @@ public class AuthenticationService {
     @Autowired
     private RecaptchaService recaptchaService;
     
-    @Transactional
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+    
+    @Autowired
+    private TokenDenylist tokenDenylist;
+    
+    @Autowired
+    private RoleAuthorityRegistry roleAuthorityRegistry;
+    
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+    
+    @Autowired
+    private PasswordRehashService passwordRehashService;
+    
+    @Autowired
+    private TwoFactorChallengeTokens twoFactorChallengeTokens;
+    
+    // Each check mostly waits on the hashing pool, so a virtual thread per check is enough
+    private final ExecutorService credentialCheckExecutor = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("login-credentials-", 0).factory());
+    
+    /**
+     * Authenticates a login request. The user is loaded once and carried through every step in a
+     * {@link LoginContext}. Attempts are recorded in their own short transactions, so a rejected
+     * login still counts towards the lockout.
+     *
+     * The reCAPTCHA call runs while the account is checked and the password verified, so the login
+     * takes the longer of the two rather than their sum. A failed reCAPTCHA or fraud verdict cancels
+     * whatever is still running.
+     */
     public LoginResponse authenticate(LoginRequest loginRequest, String ipAddress, String userAgent) {
-        String authMethod = loginRequest.getAuthMethod() != null ? 
-            loginRequest.getAuthMethod().toUpperCase() : "JWT";
+        CompletableFuture<Boolean> recaptcha = recaptchaService.verifyAsync(
+            loginRequest.getRecaptchaToken(), loginRequest.getUsername(), ipAddress).toFuture();
         
-        // Verify reCAPTCHA
-        if (!recaptchaService.verify(loginRequest.getRecaptchaToken())) {
+        LoginContext context;
+        try {
+            context = beginLogin(loginRequest, ipAddress, userAgent);
+        } catch (RuntimeException e) {
+            recaptcha.cancel(true);
+            throw e;
+        }
+        
+        // Started after the fraud verdict, so locked or suspicious logins cost no hashing
+        Future<Authentication> credentials = credentialCheckExecutor.submit(() -> verifyCredentials(loginRequest));
+        if (!Boolean.TRUE.equals(recaptcha.join())) {
+            // Drops the hash if it is still queued; not recorded, as before the checks ran in parallel
+            credentials.cancel(true);
             throw new RuntimeException("reCAPTCHA verification failed");
         }
         
+        try {
+            Authentication authentication = await(credentials);
+            return completeLogin(context, loginRequest, authentication);
+        } catch (ServiceOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw failLogin(context, e);
+        }
+    }
+    
+    /**
+     * First step of a login: loads the user and rejects suspicious or locked accounts. Blocks on the
+     * database.
+     */
+    LoginContext beginLogin(LoginRequest loginRequest, String ipAddress, String userAgent) {
+        LoginContext context = new LoginContext(loginRequest.getUsername(), ipAddress, userAgent,
+            userRepository.findByUsername(loginRequest.getUsername()).orElse(null));
+        
         // Check for suspicious activity
-        if (fraudDetectionService.isSuspiciousActivity(loginRequest.getUsername(), ipAddress)) {
-            fraudDetectionService.recordLoginAttempt(loginRequest.getUsername(), ipAddress, 
-                userAgent, false, "Suspicious activity detected");
+        if (fraudDetectionService.isSuspiciousActivity(context)) {
+            fraudDetectionService.recordFailedLogin(context, "Suspicious activity detected");
             throw new RuntimeException("Account temporarily locked due to suspicious activity");
         }
         
         // Check if account is locked
-        if (fraudDetectionService.isAccountLocked(loginRequest.getUsername())) {
-            fraudDetectionService.recordLoginAttempt(loginRequest.getUsername(), ipAddress, 
-                userAgent, false, "Account locked");
+        if (fraudDetectionService.isAccountLocked(context)) {
+            fraudDetectionService.recordFailedLogin(context, "Account locked");
             throw new RuntimeException("Account is locked. Please contact administrator.");
         }
         
+        return context;
+    }
+    
+    /**
+     * Checks the password with the requested strategy, shedding load past the concurrency limit.
+     */
+    Authentication verifyCredentials(LoginRequest loginRequest) {
+        String authMethod = authMethod(loginRequest);
+        
+        // Find appropriate authentication strategy
+        AuthenticationStrategy strategy = authenticationStrategies.stream()
+            .filter(s -> s.supports(authMethod))
+            .findFirst()
+            .orElseThrow(() -> new RuntimeException("Unsupported authentication method: " + authMethod));
+        
+        // Only a challenge issued by the first step earns priority; a 2FA code alone is client-supplied
+        boolean secondStep = twoFactorChallengeTokens.isValid(loginRequest.getTwoFactorChallenge(),
+            loginRequest.getUsername());
+        long permit = concurrencyLimiter.acquire(secondStep);
         try {
-            // Find appropriate authentication strategy
-            AuthenticationStrategy strategy = authenticationStrategies.stream()
-                .filter(s -> s.supports(authMethod))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Unsupported authentication method: " + authMethod));
-            
-            // Authenticate using the selected strategy
-            Authentication authentication = strategy.authenticate(
+            return strategy.authenticate(
                 loginRequest.getUsername(), 
                 loginRequest.getPassword()
             );
-            
-            // Get user details
-            User user = userRepository.findByUsername(loginRequest.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-            
-            // Check if 2FA is enabled
-            if (user.isTwoFactorEnabled()) {
-                // If 2FA code is not provided, require 2FA
-                if (loginRequest.getTwoFactorCode() == null || loginRequest.getTwoFactorCode().isEmpty()) {
-                    // Send code if method is SMS or EMAIL
-                    if ("SMS".equalsIgnoreCase(user.getTwoFactorMethod()) || 
-                        "EMAIL".equalsIgnoreCase(user.getTwoFactorMethod())) {
-                        twoFactorAuthService.sendCode(user);
-                    }
-                    
-                    // Return response indicating 2FA is required
-                    LoginResponse response = new LoginResponse();
-                    response.setTwoFactorRequired(true);
-                    response.setTwoFactorMethod(user.getTwoFactorMethod());
-                    response.setUsername(user.getUsername());
-                    return response;
+        } finally {
+            concurrencyLimiter.release(permit);
+        }
+    }
+    
+    /**
+     * Last step of a login once the password is accepted: two-factor check, token issue and
+     * recording the success.
+     */
+    LoginResponse completeLogin(LoginContext context, LoginRequest loginRequest, Authentication authentication) {
+        // Get user details
+        User user = context.getUser();
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
+        
+        // Check if 2FA is enabled
+        if (user.isTwoFactorEnabled()) {
+            // If 2FA code is not provided, require 2FA
+            if (loginRequest.getTwoFactorCode() == null || loginRequest.getTwoFactorCode().isEmpty()) {
+                // Send code if method is SMS or EMAIL
+                if ("SMS".equalsIgnoreCase(user.getTwoFactorMethod()) || 
+                    "EMAIL".equalsIgnoreCase(user.getTwoFactorMethod())) {
+                    twoFactorAuthService.sendCode(user);
                 }
                 
-                // Verify 2FA code
-                boolean useBackupCode = loginRequest.getTwoFactorCode().length() == 8;
-                if (!twoFactorAuthService.verify(user, loginRequest.getTwoFactorCode(), useBackupCode)) {
-                    fraudDetectionService.recordLoginAttempt(loginRequest.getUsername(), ipAddress, 
-                        userAgent, false, "Invalid 2FA code");
-                    throw new RuntimeException("Invalid 2FA code");
-                }
+                // Return response indicating 2FA is required
+                LoginResponse response = new LoginResponse();
+                response.setTwoFactorRequired(true);
+                response.setTwoFactorMethod(user.getTwoFactorMethod());
+                response.setTwoFactorChallenge(twoFactorChallengeTokens.issue(user.getUsername()));
+                response.setUsername(user.getUsername());
+                return response;
             }
             
-            // Generate JWT token
-            String jwt = jwtUtils.generateJwtToken(authentication);
-            
-            // Record successful login
-            fraudDetectionService.recordLoginAttempt(loginRequest.getUsername(), ipAddress, 
-                userAgent, true, null);
-            fraudDetectionService.handleSuccessfulLogin(loginRequest.getUsername());
-            
-            // Prepare response
-            Set<String> roles = user.getRoles().stream()
-                .map(Role::getName)
-                .collect(Collectors.toSet());
-            
-            Set<String> privileges = user.getRoles().stream()
-                .flatMap(role -> role.getPrivileges().stream())
-                .map(Privilege::getName)
-                .collect(Collectors.toSet());
-            
-            LoginResponse response = new LoginResponse();
-            response.setToken(jwt);
-            response.setUsername(user.getUsername());
-            response.setEmail(user.getEmail());
-            response.setRoles(roles);
-            response.setPrivileges(privileges);
-            response.setAuthMethod(authMethod);
-            
-            return response;
-            
-        } catch (Exception e) {
-            // Record failed login
-            fraudDetectionService.recordLoginAttempt(loginRequest.getUsername(), ipAddress, 
-                userAgent, false, e.getMessage());
-            throw new RuntimeException("Authentication failed: " + e.getMessage());
+            // Verify 2FA code
+            boolean useBackupCode = loginRequest.getTwoFactorCode().length() == 8;
+            if (!twoFactorAuthService.verify(user, loginRequest.getTwoFactorCode(), useBackupCode)) {
+                fraudDetectionService.recordFailedLogin(context, "Invalid 2FA code");
+                throw new RuntimeException("Invalid 2FA code");
+            }
+        }
+        
+        // Generate JWT token
+        String jwt = jwtUtils.generateJwtToken(authentication);
+        
+        // Record successful login
+        fraudDetectionService.recordSuccessfulLogin(context);
+        
+        // Only a local account's stored hash verified the password; LDAP logins have none to update
+        if (authentication.getPrincipal() instanceof UserPrincipal) {
+            passwordRehashService.rehashIfOutdated(user, loginRequest.getPassword());
+        }
+        
+        // Prepare response
+        RoleAuthorityRegistry.RoleAuthorities granted = roleAuthorityRegistry.resolve(user.getRoles());
+        
+        LoginResponse response = new LoginResponse();
+        response.setToken(jwt);
+        response.setRefreshToken(refreshTokenService.issue(user));
+        response.setUsername(user.getUsername());
+        response.setEmail(user.getEmail());
+        response.setRoles(granted.roleNames());
+        response.setPrivileges(granted.privilegeNames());
+        response.setAuthMethod(authMethod(loginRequest));
+        
+        return response;
+    }
+    
+    /**
+     * Records a failed login, unless a more specific reason was already recorded, and returns the
+     * exception to throw.
+     */
+    RuntimeException failLogin(LoginContext context, Exception cause) {
+        fraudDetectionService.recordFailedLogin(context, cause.getMessage());
+        return new RuntimeException("Authentication failed: " + cause.getMessage());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        credentialCheckExecutor.shutdown();
+    }
+    
+    private static Authentication await(Future<Authentication> credentials) throws Exception {
+        try {
+            return credentials.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (InterruptedException e) {
+            credentials.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+    
+    private static String authMethod(LoginRequest loginRequest) {
+        return loginRequest.getAuthMethod() != null ? 
+            loginRequest.getAuthMethod().toUpperCase() : "JWT";
+    }
+    
+    /**
+     * Revokes a bearer token until it expires. Tokens that are already invalid are ignored.
+     */
+    public void logout(String token) {
+        JwtValidationResult result = jwtUtils.parseAndValidate(token);
+        if (!result.isValid()) {
+            return;
         }
+        
+        Claims claims = result.getClaims();
+        tokenDenylist.revoke(claims.getId(), claims.getExpiration().getTime());
+        verifiedTokenCache.invalidate(token);
     }
     
     @Transactional
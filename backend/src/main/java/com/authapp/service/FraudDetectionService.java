@@ -1,122 +1,141 @@
 package com.authapp.service;
 
+import com.authapp.event.UserSecurityChangedEvent;
 import com.authapp.model.LoginAttempt;
-import com.authapp.repository.LoginAttemptRepository;
+import com.authapp.model.User;
 import com.authapp.repository.UserRepository;
+import com.authapp.security.jwt.TokenVersionRegistry;
+import com.authapp.security.risk.KnownDeviceRegistry;
+import com.authapp.security.risk.RiskAssessment;
+import com.authapp.security.risk.RiskEngine;
+import com.authapp.security.risk.RiskFeatures;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.time.LocalTime;
 
 @Service
 public class FraudDetectionService {
     
     @Autowired
-    private LoginAttemptRepository loginAttemptRepository;
+    private LoginAttemptCounters attemptCounters;
+    
+    @Autowired
+    private LoginAttemptWriter loginAttemptWriter;
     
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private RiskEngine riskEngine;
+    
+    @Autowired
+    private KnownDeviceRegistry knownDeviceRegistry;
+    
     @Value("${app.security.max-failed-attempts:5}")
     private int maxFailedAttempts;
     
     @Value("${app.security.lockout-duration-minutes:30}")
     private int lockoutDurationMinutes;
     
-    @Value("${app.security.fraud-detection-window-minutes:60}")
-    private int fraudDetectionWindowMinutes;
+    @Value("${app.security.risk.suspicious-threshold:50}")
+    private int suspiciousThreshold;
     
+    /**
+     * Records a failed attempt and counts it against the user, locking the account at the threshold.
+     * Each request is recorded once; later calls for the same context are ignored.
+     */
     @Transactional
-    public void recordLoginAttempt(String username, String ipAddress, String userAgent, 
-                                   boolean success, String failureReason) {
-        LoginAttempt attempt = new LoginAttempt();
-        attempt.setUsername(username);
-        attempt.setIpAddress(ipAddress);
-        attempt.setUserAgent(userAgent);
-        attempt.setSuccess(success);
-        attempt.setFailureReason(failureReason);
-        
-        // Calculate risk score
-        int riskScore = calculateRiskScore(username, ipAddress);
-        attempt.setRiskScore(riskScore);
-        attempt.setSuspicious(riskScore > 50);
+    public void recordFailedLogin(LoginContext context, String failureReason) {
+        if (context.isAttemptRecorded()) {
+            return;
+        }
+        saveAttempt(context, false, failureReason);
         
-        loginAttemptRepository.save(attempt);
+        User user = context.getUser();
+        if (user == null) {
+            return;
+        }
         
-        // Handle account locking
-        if (!success) {
-            handleFailedLogin(username);
+        LocalDateTime now = LocalDateTime.now();
+        userRepository.incrementFailedLoginAttempts(user.getId(), now);
+        if (userRepository.lockIfFailedAttemptsReached(user.getId(), maxFailedAttempts, now) > 0) {
+            // Stop trusting self-contained tokens issued before the lock
+            tokenVersionRegistry.bump(user.getUsername(), user.getTokenVersion() + 1);
+            eventPublisher.publishEvent(new UserSecurityChangedEvent(user.getUsername()));
         }
     }
     
-    private int calculateRiskScore(String username, String ipAddress) {
-        LocalDateTime windowStart = LocalDateTime.now().minusMinutes(fraudDetectionWindowMinutes);
-        
-        long failedAttempts = loginAttemptRepository.countFailedAttempts(username, windowStart);
-        long failedAttemptsByIp = loginAttemptRepository.countFailedAttemptsByIp(ipAddress, windowStart);
-        
-        int riskScore = 0;
-        
-        // Multiple failed attempts from same username
-        if (failedAttempts > 3) {
-            riskScore += 30;
-        }
-        if (failedAttempts > 5) {
-            riskScore += 20;
+    /**
+     * Records a successful attempt; the counter reset and last login time go out as one update.
+     */
+    @Transactional
+    public void recordSuccessfulLogin(LoginContext context) {
+        if (context.isAttemptRecorded()) {
+            return;
         }
+        saveAttempt(context, true, null);
         
-        // Multiple failed attempts from same IP
-        if (failedAttemptsByIp > 10) {
-            riskScore += 30;
-        }
+        knownDeviceRegistry.recordLogin(context.getUsername(), context.getUserAgent());
         
-        // Check for rapid attempts
-        List<LoginAttempt> recentAttempts = loginAttemptRepository
-                .findByUsernameAndAttemptTimeAfter(username, LocalDateTime.now().minusMinutes(5));
-        if (recentAttempts.size() > 5) {
-            riskScore += 20;
+        User user = context.getUser();
+        if (user != null) {
+            userRepository.recordSuccessfulLogin(user.getId(), LocalDateTime.now());
         }
-        
-        return Math.min(riskScore, 100);
-    }
-    
-    private void handleFailedLogin(String username) {
-        userRepository.findByUsername(username).ifPresent(user -> {
-            int attempts = user.getFailedLoginAttempts() + 1;
-            user.setFailedLoginAttempts(attempts);
-            
-            if (attempts >= maxFailedAttempts) {
-                user.setLocked(true);
-            }
-            
-            userRepository.save(user);
-        });
     }
     
-    @Transactional
-    public void handleSuccessfulLogin(String username) {
-        userRepository.findByUsername(username).ifPresent(user -> {
-            user.setFailedLoginAttempts(0);
-            user.setLastLogin(LocalDateTime.now());
-            userRepository.save(user);
-        });
+    public boolean isAccountLocked(LoginContext context) {
+        return context.getUser() != null && context.getUser().isLocked();
     }
     
-    public boolean isAccountLocked(String username) {
-        return userRepository.findByUsername(username)
-                .map(user -> user.isLocked())
-                .orElse(false);
+    /**
+     * @return whether a risk rule rejects the attempt before the credentials are checked
+     */
+    public boolean isSuspiciousActivity(LoginContext context) {
+        return assess(context).denied();
     }
     
-    public boolean isSuspiciousActivity(String username, String ipAddress) {
-        LocalDateTime windowStart = LocalDateTime.now().minusMinutes(fraudDetectionWindowMinutes);
+    private void saveAttempt(LoginContext context, boolean success, String failureReason) {
+        LoginAttempt attempt = new LoginAttempt();
+        attempt.setUsername(context.getUsername());
+        attempt.setIpAddress(context.getIpAddress());
+        attempt.setUserAgent(context.getUserAgent());
+        attempt.setSuccess(success);
+        attempt.setFailureReason(failureReason);
         
-        long failedAttempts = loginAttemptRepository.countFailedAttempts(username, windowStart);
-        long failedAttemptsByIp = loginAttemptRepository.countFailedAttemptsByIp(ipAddress, windowStart);
+        RiskAssessment assessment = assess(context);
+        attempt.setRiskScore(assessment.score());
+        attempt.setSuspicious(assessment.isSuspicious(suspiciousThreshold));
         
-        return failedAttempts > maxFailedAttempts || failedAttemptsByIp > 20;
+        attempt.setAttemptTime(LocalDateTime.now());
+        attemptCounters.record(context.getUsername(), context.getIpAddress(), success, attempt.getAttemptTime());
+        loginAttemptWriter.enqueue(attempt);
+        context.markAttemptRecorded();
+    }
+    
+    private RiskAssessment assess(LoginContext context) {
+        RiskAssessment assessment = context.getRiskAssessment();
+        if (assessment == null) {
+            String username = context.getUsername();
+            RiskFeatures features = new RiskFeatures(
+                    attemptCounters.failedByUsername(username),
+                    attemptCounters.failedByIp(context.getIpAddress()),
+                    attemptCounters.recentByUsername(username),
+                    knownDeviceRegistry.isNewDevice(username, context.getUserAgent()),
+                    LocalTime.now().getHour());
+            assessment = riskEngine.evaluate(features);
+            context.setRiskAssessment(assessment);
+        }
+        return assessment;
     }
 }
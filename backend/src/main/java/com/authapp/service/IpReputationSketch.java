@@ -0,0 +1,334 @@
+package com.authapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-memory failure counts per IP address over the fraud detection window.
+ *
+ * The window is split into panes. Each pane holds a Count-Min Sketch of {@code depth} rows by
+ * {@code width} counters, plus a Space-Saving summary of the {@code top-k} most frequent IPs in that
+ * pane. A pane is replaced when its slot is reused, so memory stays at
+ * {@code panes * depth * width * 4} bytes however many distinct addresses are seen.
+ *
+ * Estimates never undercount. With N failures in the window, an estimate exceeds the true count by
+ * more than {@code e / width * N} with probability at most {@code e^-depth}. With the defaults
+ * (width 65536, depth 4) that is 0.004% of N, with 98% confidence. Updates are conservative: only
+ * the counters below the address's new estimate are raised, rather than one counter per row, which
+ * keeps the error for addresses with few or no failures far below that bound even at high failure
+ * rates. Counters are only ever raised atomically, and updates for the same address are serialised
+ * on one of a fixed set of locks picked by its hash, so concurrent updates cannot lose counts.
+ * The summaries are only used to pick candidates for the top offender list; their counts come from
+ * the sketch.
+ *
+ * The width should be at least the failures one pane can hold (the global rate limit times the pane
+ * length). Below that, addresses with no failures of their own pick up estimates that reach the risk
+ * thresholds.
+ */
+@Component
+public class IpReputationSketch {
+    
+    private static final int KEY_LOCKS = 64;
+    
+    private final int width;
+    private final int depth;
+    private final int topK;
+    private final long paneMinutes;
+    private final long seed = new SecureRandom().nextLong();
+    
+    private final AtomicReferenceArray<Pane> panes;
+    private final Object[] keyLocks = new Object[KEY_LOCKS];
+    
+    public IpReputationSketch(@Value("${app.security.fraud-detection-window-minutes:60}") int windowMinutes,
+                              @Value("${app.security.ip-sketch.panes:6}") int paneCount,
+                              @Value("${app.security.ip-sketch.width:65536}") int width,
+                              @Value("${app.security.ip-sketch.depth:4}") int depth,
+                              @Value("${app.security.ip-sketch.top-k:100}") int topK) {
+        this.width = width;
+        this.depth = depth;
+        this.topK = topK;
+        this.paneMinutes = Math.max(1, (windowMinutes + paneCount - 1) / paneCount);
+        this.panes = new AtomicReferenceArray<>((int) ((windowMinutes + paneMinutes - 1) / paneMinutes));
+        for (int i = 0; i < KEY_LOCKS; i++) {
+            keyLocks[i] = new Object();
+        }
+    }
+    
+    public void recordFailure(String ipAddress, long epochMinute) {
+        if (ipAddress == null) {
+            return;
+        }
+        
+        Pane pane = paneFor(epochMinute / paneMinutes);
+        if (pane == null) {
+            return;
+        }
+        
+        long hash = hash64(ipAddress);
+        int estimate;
+        // Two updates of one address must not both raise its counters from the same estimate
+        synchronized (keyLocks[(int) (hash >>> 58)]) {
+            estimate = pane.add(hash);
+        }
+        pane.heavyHitters.offer(ipAddress, estimate);
+    }
+    
+    /**
+     * @return estimated failures from the address within the window; never less than the true count
+     */
+    public long estimateFailures(String ipAddress, long currentEpochMinute) {
+        if (ipAddress == null) {
+            return 0;
+        }
+        
+        long hash = hash64(ipAddress);
+        long total = 0;
+        for (Pane pane : livePanes(currentEpochMinute)) {
+            total += pane.estimate(hash);
+        }
+        return total;
+    }
+    
+    /**
+     * Addresses with the most failures in the window, highest first.
+     */
+    public List<IpFailureCount> topOffenders(long currentEpochMinute, int limit) {
+        List<Pane> live = livePanes(currentEpochMinute);
+        Set<String> candidates = new HashSet<>();
+        for (Pane pane : live) {
+            candidates.addAll(pane.heavyHitters.keys());
+        }
+        
+        List<IpFailureCount> ranked = new ArrayList<>(candidates.size());
+        for (String ipAddress : candidates) {
+            long hash = hash64(ipAddress);
+            long estimate = 0;
+            for (Pane pane : live) {
+                estimate += pane.estimate(hash);
+            }
+            ranked.add(new IpFailureCount(ipAddress, estimate));
+        }
+        ranked.sort(Comparator.comparingLong(IpFailureCount::estimatedFailures).reversed());
+        return ranked.size() > limit ? List.copyOf(ranked.subList(0, limit)) : ranked;
+    }
+    
+    public int getTopK() {
+        return topK;
+    }
+    
+    private Pane paneFor(long paneEpoch) {
+        int slot = (int) Math.floorMod(paneEpoch, (long) panes.length());
+        while (true) {
+            Pane pane = panes.get(slot);
+            if (pane != null && pane.epoch == paneEpoch) {
+                return pane;
+            }
+            if (pane != null && pane.epoch > paneEpoch) {
+                // Older than the window
+                return null;
+            }
+            Pane fresh = new Pane(paneEpoch, depth, width, topK);
+            if (panes.compareAndSet(slot, pane, fresh)) {
+                return fresh;
+            }
+        }
+    }
+    
+    private List<Pane> livePanes(long currentEpochMinute) {
+        long currentPane = currentEpochMinute / paneMinutes;
+        long oldestPane = currentPane - panes.length() + 1;
+        List<Pane> live = new ArrayList<>(panes.length());
+        for (int i = 0; i < panes.length(); i++) {
+            Pane pane = panes.get(i);
+            if (pane != null && pane.epoch >= oldestPane && pane.epoch <= currentPane) {
+                live.add(pane);
+            }
+        }
+        return live;
+    }
+    
+    private long hash64(String value) {
+        // Seeded per instance so addresses cannot be picked to collide in every row
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    private static final class Pane {
+        
+        private final long epoch;
+        private final int depth;
+        private final int width;
+        private final AtomicIntegerArray counters;
+        private final SpaceSaving heavyHitters;
+        
+        Pane(long epoch, int depth, int width, int topK) {
+            this.epoch = epoch;
+            this.depth = depth;
+            this.width = width;
+            this.counters = new AtomicIntegerArray(depth * width);
+            this.heavyHitters = new SpaceSaving(topK);
+        }
+        
+        /**
+         * Conservative update: raises each of the address's counters to at least its current
+         * estimate plus one. Counters shared with other addresses that are already higher are left
+         * alone, so they do not collect noise the estimate could never use.
+         *
+         * @return the estimate after adding one event
+         */
+        int add(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            int target = estimate(hash) + 1;
+            for (int row = 0; row < depth; row++) {
+                counters.accumulateAndGet(index(row, h1, h2), target, Math::max);
+            }
+            return target;
+        }
+        
+        int estimate(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                min = Math.min(min, counters.get(index(row, h1, h2)));
+            }
+            return min;
+        }
+        
+        private int index(int row, int h1, int h2) {
+            return row * width + Math.floorMod(h1 + row * h2, width);
+        }
+    }
+    
+    /**
+     * Space-Saving summary keeping the {@code capacity} most frequent keys. A new key replaces the
+     * key with the lowest count and inherits that count as its possible overestimate.
+     *
+     * Entries sit in a min-heap on count, indexed by key, so each update is O(log capacity). Most
+     * addresses are seen a few times and can never displace the minimum; they are turned away
+     * against the published minimum without taking the lock.
+     */
+    private static final class SpaceSaving {
+        
+        private final Entry[] heap;
+        private final Map<String, Entry> index;
+        private int size;
+        // Count a new key must exceed to enter, -1 while there is room. It only grows, so a stale
+        // read can send a key to the lock needlessly but never turn away one that should enter.
+        private volatile long floor;
+        
+        SpaceSaving(int capacity) {
+            this.heap = new Entry[capacity];
+            this.index = new ConcurrentHashMap<>(capacity * 2);
+            this.floor = capacity > 0 ? -1 : Long.MAX_VALUE;
+        }
+        
+        void offer(String key, long sketchEstimate) {
+            // A fresh key cannot be ahead of the minimum yet; skip the churn until the sketch says so
+            if (sketchEstimate <= floor && !index.containsKey(key)) {
+                return;
+            }
+            
+            synchronized (this) {
+                Entry entry = index.get(key);
+                if (entry != null) {
+                    entry.count++;
+                    siftDown(entry.position);
+                } else if (size < heap.length) {
+                    place(new Entry(key, 1), size++);
+                    siftUp(size - 1);
+                } else if (sketchEstimate > heap[0].count) {
+                    Entry min = heap[0];
+                    index.remove(min.key);
+                    place(new Entry(key, min.count + 1), 0);
+                    siftDown(0);
+                } else {
+                    return;
+                }
+                floor = size < heap.length ? -1 : heap[0].count;
+            }
+        }
+        
+        List<String> keys() {
+            return List.copyOf(index.keySet());
+        }
+        
+        private void place(Entry entry, int position) {
+            heap[position] = entry;
+            entry.position = position;
+            index.put(entry.key, entry);
+        }
+        
+        private void siftUp(int position) {
+            Entry entry = heap[position];
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (heap[parent].count <= entry.count) {
+                    break;
+                }
+                move(heap[parent], position);
+                position = parent;
+            }
+            move(entry, position);
+        }
+        
+        private void siftDown(int position) {
+            Entry entry = heap[position];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                    child++;
+                }
+                if (entry.count <= heap[child].count) {
+                    break;
+                }
+                move(heap[child], position);
+                position = child;
+            }
+            move(entry, position);
+        }
+        
+        private void move(Entry entry, int position) {
+            heap[position] = entry;
+            entry.position = position;
+        }
+    }
+    
+    private static final class Entry {
+        
+        private final String key;
+        private long count;
+        private int position;
+        
+        Entry(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+    
+    public record IpFailureCount(String ipAddress, long estimatedFailures) {
+    }
+}
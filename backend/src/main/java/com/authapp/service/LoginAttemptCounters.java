@@ -0,0 +1,125 @@
+package com.authapp.service;
+
+import com.authapp.repository.LoginAttemptRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * In-memory login attempt counts used for lockout and risk decisions, so a login never scans
+ * {@code login_attempts}. Failures are counted per username over
+ * {@code app.security.fraud-detection-window-minutes}; all attempts are counted per username over
+ * the short rapid-attempt window. Failures per IP go to the fixed-size {@link IpReputationSketch},
+ * since the number of attacking addresses is unbounded. The counts are rebuilt from the table at
+ * startup.
+ */
+@Component
+public class LoginAttemptCounters {
+    
+    static final int RAPID_WINDOW_MINUTES = 5;
+    
+    private static final Logger logger = LoggerFactory.getLogger(LoginAttemptCounters.class);
+    
+    private final LoginAttemptRepository loginAttemptRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int windowMinutes;
+    
+    private final SlidingWindowCounter failuresByUsername;
+    private final SlidingWindowCounter attemptsByUsername;
+    private final IpReputationSketch failuresByIp;
+    
+    public LoginAttemptCounters(LoginAttemptRepository loginAttemptRepository,
+                                PlatformTransactionManager transactionManager,
+                                IpReputationSketch ipReputationSketch,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.security.fraud-detection-window-minutes:60}") int windowMinutes,
+                                @Value("${app.security.attempt-counters.max-keys:100000}") long maxKeys) {
+        this.loginAttemptRepository = loginAttemptRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.windowMinutes = windowMinutes;
+        
+        this.failuresByUsername = new SlidingWindowCounter(windowMinutes, maxKeys);
+        this.attemptsByUsername = new SlidingWindowCounter(RAPID_WINDOW_MINUTES, maxKeys);
+        this.failuresByIp = ipReputationSketch;
+        
+        meterRegistry.gauge("login.attempts.counters.keys", this, counters ->
+                counters.failuresByUsername.estimatedKeys() + counters.attemptsByUsername.estimatedKeys());
+    }
+    
+    public void record(String username, String ipAddress, boolean success, LocalDateTime attemptTime) {
+        long minute = epochMinute(attemptTime);
+        attemptsByUsername.increment(username, minute);
+        if (!success) {
+            failuresByUsername.increment(username, minute);
+            failuresByIp.recordFailure(ipAddress, minute);
+        }
+    }
+    
+    public long failedByUsername(String username) {
+        return failuresByUsername.sum(username, currentMinute());
+    }
+    
+    /**
+     * @return an estimate that may overcount slightly but never undercounts
+     */
+    public long failedByIp(String ipAddress) {
+        return failuresByIp.estimateFailures(ipAddress, currentMinute());
+    }
+    
+    public List<IpReputationSketch.IpFailureCount> topFailingIps(int limit) {
+        return failuresByIp.topOffenders(currentMinute(), limit);
+    }
+    
+    public long recentByUsername(String username) {
+        return attemptsByUsername.sum(username, currentMinute());
+    }
+    
+    @PostConstruct
+    void rebuild() {
+        LocalDateTime since = LocalDateTime.now().minusMinutes(windowMinutes);
+        long replayed = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            try (Stream<LoginAttemptRepository.AttemptSample> samples =
+                         loginAttemptRepository.streamByAttemptTimeAfter(since)) {
+                Iterator<LoginAttemptRepository.AttemptSample> iterator = samples.iterator();
+                while (iterator.hasNext()) {
+                    LoginAttemptRepository.AttemptSample sample = iterator.next();
+                    record(sample.getUsername(), sample.getIpAddress(), sample.isSuccess(), sample.getAttemptTime());
+                    count++;
+                }
+            }
+            return count;
+        });
+        if (replayed > 0) {
+            logger.info("Rebuilt login attempt counters from {} recent attempts", replayed);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.security.attempt-counters.cleanup-interval-ms:60000}")
+    public void evictIdleKeys() {
+        failuresByUsername.cleanUp();
+        attemptsByUsername.cleanUp();
+    }
+    
+    private static long currentMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+    
+    private static long epochMinute(LocalDateTime time) {
+        return TimeUnit.MILLISECONDS.toMinutes(time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+}
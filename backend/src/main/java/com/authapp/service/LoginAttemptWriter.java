@@ -0,0 +1,207 @@
+package com.authapp.service;
+
+import com.authapp.model.LoginAttempt;
+import com.authapp.repository.LoginAttemptRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind writer for {@link LoginAttempt} audit records.
+ *
+ * Attempts are queued by the login thread and inserted by a single background thread in JDBC
+ * batches, flushed when a batch is full or the flush interval passes. When the queue is full the
+ * overflow policy either writes the record on the caller's thread or drops it. The queue is drained
+ * on shutdown after the web server has stopped accepting requests.
+ *
+ * Fraud checks read {@link LoginAttemptCounters}, not the table, so they do not depend on the
+ * writer having flushed.
+ */
+@Component
+public class LoginAttemptWriter implements SmartLifecycle {
+    
+    public enum OverflowPolicy {
+        CALLER_RUNS,
+        DROP
+    }
+    
+    private static final Logger logger = LoggerFactory.getLogger(LoginAttemptWriter.class);
+    
+    private final LoginAttemptRepository loginAttemptRepository;
+    private final TransactionTemplate writeTransaction;
+    private final BlockingQueue<LoginAttempt> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final OverflowPolicy overflowPolicy;
+    
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+    private final Counter failedCounter;
+    
+    // Reported by the drain thread once per cycle, so a burst of drops is one log line, not one each
+    private final AtomicLong droppedSinceReport = new AtomicLong();
+    
+    private volatile boolean running;
+    private Thread drainThread;
+    
+    public LoginAttemptWriter(LoginAttemptRepository loginAttemptRepository,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.security.audit.queue-capacity:10000}") int queueCapacity,
+                              @Value("${app.security.audit.batch-size:200}") int batchSize,
+                              @Value("${app.security.audit.flush-interval-ms:500}") long flushIntervalMillis,
+                              @Value("${app.security.audit.overflow-policy:CALLER_RUNS}") OverflowPolicy overflowPolicy) {
+        this.loginAttemptRepository = loginAttemptRepository;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = overflowPolicy;
+        
+        meterRegistry.gauge("login.attempts.audit.queued", queue, BlockingQueue::size);
+        this.writtenCounter = Counter.builder("login.attempts.audit.written").register(meterRegistry);
+        this.droppedCounter = Counter.builder("login.attempts.audit.dropped").register(meterRegistry);
+        this.failedCounter = Counter.builder("login.attempts.audit.failed")
+                .description("Attempts lost because their batch could not be written")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Queues an attempt for writing. The attempt time is taken now, not when the row is inserted.
+     */
+    public void enqueue(LoginAttempt attempt) {
+        if (attempt.getAttemptTime() == null) {
+            attempt.setAttemptTime(LocalDateTime.now());
+        }
+        if (running && queue.offer(attempt)) {
+            return;
+        }
+        
+        if (overflowPolicy == OverflowPolicy.DROP && running) {
+            droppedCounter.increment();
+            droppedSinceReport.incrementAndGet();
+            return;
+        }
+        
+        // Backpressure: the caller pays for the insert, which also covers writes before start or after stop
+        write(List.of(attempt));
+    }
+    
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        drainThread = new Thread(this::drainLoop, "login-attempt-writer");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+    
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        // Not interrupted, so a batch being written is not cut off; the drain loop notices the
+        // flag within one flush interval
+        running = false;
+        try {
+            drainThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        // Anything the drain thread did not get to is written here
+        List<LoginAttempt> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            for (int from = 0; from < remaining.size(); from += batchSize) {
+                write(remaining.subList(from, Math.min(from + batchSize, remaining.size())));
+            }
+            logger.info("Flushed {} queued login attempts on shutdown", remaining.size());
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    @Override
+    public int getPhase() {
+        // Stop after the web server so no new attempts arrive while the queue is drained
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+    
+    private void drainLoop() {
+        List<LoginAttempt> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                LoginAttempt first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                
+                // Wait up to one flush interval for the batch to fill
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remainingNanos <= 0) {
+                        break;
+                    }
+                    LoginAttempt next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Write what was collected, then let the loop end
+                running = false;
+            }
+            
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+            reportDropped();
+        }
+        reportDropped();
+    }
+    
+    private void reportDropped() {
+        long dropped = droppedSinceReport.getAndSet(0);
+        if (dropped > 0) {
+            logger.warn("Login attempt audit queue is full, dropped {} attempts", dropped);
+        }
+    }
+    
+    private void write(List<LoginAttempt> batch) {
+        try {
+            writeTransaction.executeWithoutResult(status -> loginAttemptRepository.saveAll(batch));
+            writtenCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            failedCounter.increment(batch.size());
+            logger.error("Failed to write {} login attempts", batch.size(), e);
+        }
+    }
+}
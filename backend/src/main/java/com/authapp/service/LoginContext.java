@@ -0,0 +1,65 @@
+package com.authapp.service;
+
+import com.authapp.model.User;
+import com.authapp.security.risk.RiskAssessment;
+
+/**
+ * State of a single login request, passed through lockout checks, authentication, two-factor
+ * verification and attempt recording so the user is read and the risk is assessed once.
+ */
+public final class LoginContext {
+    
+    private final String username;
+    private final String ipAddress;
+    private final String userAgent;
+    private final User user;
+    
+    private RiskAssessment riskAssessment;
+    private boolean attemptRecorded;
+    
+    LoginContext(String username, String ipAddress, String userAgent, User user) {
+        this.username = username;
+        this.ipAddress = ipAddress;
+        this.userAgent = userAgent;
+        this.user = user;
+    }
+    
+    public String getUsername() {
+        return username;
+    }
+    
+    public String getIpAddress() {
+        return ipAddress;
+    }
+    
+    public String getUserAgent() {
+        return userAgent;
+    }
+    
+    /**
+     * @return the user loaded at the start of the request, or {@code null} if the username is unknown
+     */
+    public User getUser() {
+        return user;
+    }
+    
+    /**
+     * @return the risk assessment made before this request's own attempt was recorded, or
+     *         {@code null} until the first fraud check
+     */
+    RiskAssessment getRiskAssessment() {
+        return riskAssessment;
+    }
+    
+    void setRiskAssessment(RiskAssessment riskAssessment) {
+        this.riskAssessment = riskAssessment;
+    }
+    
+    boolean isAttemptRecorded() {
+        return attemptRecorded;
+    }
+    
+    void markAttemptRecorded() {
+        this.attemptRecorded = true;
+    }
+}
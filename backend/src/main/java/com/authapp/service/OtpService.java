@@ -0,0 +1,99 @@
+package com.authapp.service;
+
+import com.authapp.model.User;
+import com.authapp.security.otp.OtpStore;
+import com.authapp.security.ratelimit.RateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Issues and checks the six digit codes sent for SMS and email 2FA.
+ *
+ * A code is stored in the {@link OtpStore} only as an HMAC keyed with {@code app.2fa.otp.pepper}
+ * and bound to the user id. It is valid for {@code ttl-seconds}, allows {@code max-attempts} guesses
+ * and works once. Sends are rate limited per user, so a caller cannot flood a phone or mailbox or
+ * keep replacing a challenge to get fresh attempts.
+ */
+@Service
+public class OtpService {
+    
+    private static final Pattern SIX_DIGITS = Pattern.compile("\\d{6}");
+    
+    private final OtpStore otpStore;
+    private final RateLimiter sendLimiter;
+    private final long ttlMillis;
+    private final int maxAttempts;
+    private final SecretKeySpec pepper;
+    private final ThreadLocal<Mac> macs;
+    private final SecureRandom secureRandom = new SecureRandom();
+    
+    public OtpService(OtpStore otpStore,
+                      @Value("${app.2fa.otp.pepper}") String pepper,
+                      @Value("${app.2fa.otp.ttl-seconds:300}") long ttlSeconds,
+                      @Value("${app.2fa.otp.max-attempts:5}") int maxAttempts,
+                      @Value("${app.2fa.otp.send.capacity:3}") int sendCapacity,
+                      @Value("${app.2fa.otp.send.per-minute:1}") int sendPerMinute,
+                      @Value("${app.2fa.otp.send.max-keys:100000}") long maxKeys) {
+        this.otpStore = otpStore;
+        this.sendLimiter = new RateLimiter(sendCapacity, sendPerMinute, maxKeys);
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.maxAttempts = maxAttempts;
+        this.pepper = new SecretKeySpec(pepper.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        // Mac.getInstance looks up the provider on every call, so each thread keeps an initialised one
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(this.pepper);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+    }
+    
+    /**
+     * Creates a new code for the user, replacing any outstanding one.
+     *
+     * @return the plain code, to be sent to the user and not kept
+     */
+    public String issue(User user) {
+        long waitNanos = sendLimiter.tryAcquire(String.valueOf(user.getId()));
+        if (waitNanos > 0) {
+            long waitSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos));
+            throw new RuntimeException("Too many verification codes requested. Please try again in "
+                    + waitSeconds + " seconds.");
+        }
+        
+        String code = String.format("%06d", secureRandom.nextInt(1000000));
+        otpStore.put(user.getId(), hash(user.getId(), code), System.currentTimeMillis() + ttlMillis, maxAttempts);
+        return code;
+    }
+    
+    public boolean verify(User user, String code) {
+        if (code == null || !SIX_DIGITS.matcher(code).matches()) {
+            return false;
+        }
+        return otpStore.verify(user.getId(), hash(user.getId(), code), System.currentTimeMillis());
+    }
+    
+    public void revoke(User user) {
+        otpStore.remove(user.getId());
+    }
+    
+    private byte[] hash(long userId, String code) {
+        Mac mac = macs.get();
+        // Bound to the user, so equal codes for different users do not share a hash
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            mac.update((byte) (userId >>> shift));
+        }
+        return mac.doFinal(code.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,70 @@
+package com.authapp.service;
+
+import com.authapp.event.UserSecurityChangedEvent;
+import com.authapp.model.User;
+import com.authapp.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Brings a stored password hash in line with this node's hash policy once the user has proven the
+ * password. The new hash is computed outside any transaction, and the row is only updated if it
+ * still holds the hash that was checked.
+ */
+@Service
+public class PasswordRehashService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PasswordRehashService.class);
+    
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate writeTransaction;
+    private final Counter rehashedCounter;
+    
+    public PasswordRehashService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                                 ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.eventPublisher = eventPublisher;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.rehashedCounter = Counter.builder("password.rehashed")
+                .description("Stored hashes replaced after a successful login")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Re-hashes the password if its stored hash uses another algorithm or cost. Never fails the
+     * login; errors are logged and the old hash stays valid.
+     */
+    public void rehashIfOutdated(User user, String rawPassword) {
+        String storedHash = user.getPassword();
+        if (storedHash == null || rawPassword == null || !passwordEncoder.upgradeEncoding(storedHash)) {
+            return;
+        }
+        
+        try {
+            String newHash = passwordEncoder.encode(rawPassword);
+            Integer updated = writeTransaction.execute(status ->
+                    userRepository.replacePasswordHash(user.getId(), storedHash, newHash, LocalDateTime.now()));
+            if (updated != null && updated > 0) {
+                user.setPassword(newHash);
+                rehashedCounter.increment();
+                // Cached user details still carry the old hash
+                eventPublisher.publishEvent(new UserSecurityChangedEvent(user.getUsername()));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not re-hash password for {}", user.getUsername(), e);
+        }
+    }
+}
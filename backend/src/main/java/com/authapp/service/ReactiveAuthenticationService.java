@@ -0,0 +1,86 @@
+package com.authapp.service;
+
+import com.authapp.dto.LoginRequest;
+import com.authapp.dto.LoginResponse;
+import com.authapp.security.ratelimit.ServiceOverloadedException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Non-blocking variant of {@link AuthenticationService#authenticate}, composed from the same steps.
+ *
+ * reCAPTCHA is verified without holding a thread. The database and password steps run on a
+ * bounded scheduler, so the caller's thread is released at once and the number of threads blocked
+ * in login work is capped; when its queue is full the login is shed with
+ * {@link ServiceOverloadedException}. Audit rows are queued to {@link LoginAttemptWriter} and never
+ * waited for.
+ */
+@Service
+public class ReactiveAuthenticationService {
+    
+    private final AuthenticationService authenticationService;
+    private final RecaptchaService recaptchaService;
+    private final Scheduler loginScheduler;
+    
+    public ReactiveAuthenticationService(AuthenticationService authenticationService,
+                                         RecaptchaService recaptchaService,
+                                         @Value("${app.security.reactive-login.thread-cap:0}") int threadCap,
+                                         @Value("${app.security.reactive-login.queue-capacity:1000}") int queueCapacity) {
+        this.authenticationService = authenticationService;
+        this.recaptchaService = recaptchaService;
+        this.loginScheduler = Schedulers.newBoundedElastic(
+                threadCap > 0 ? threadCap : Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                queueCapacity, "reactive-login");
+    }
+    
+    /**
+     * reCAPTCHA runs alongside the account and password checks; whichever fails first cancels the
+     * other.
+     */
+    public Mono<LoginResponse> authenticate(LoginRequest loginRequest, String ipAddress, String userAgent) {
+        Mono<Boolean> recaptcha = recaptchaService.verifyAsync(
+                loginRequest.getRecaptchaToken(), loginRequest.getUsername(), ipAddress)
+            .filter(Boolean::booleanValue)
+            .switchIfEmpty(Mono.error(() -> new RuntimeException("reCAPTCHA verification failed")));
+        
+        Mono<LoginStep> credentials = blocking(() -> authenticationService.beginLogin(loginRequest, ipAddress, userAgent))
+            .flatMap(context -> blocking(() -> authenticationService.verifyCredentials(loginRequest))
+                .map(authentication -> new LoginStep(context, authentication))
+                .onErrorMap(ReactiveAuthenticationService::isLoginFailure,
+                    e -> authenticationService.failLogin(context, (Exception) e)));
+        
+        return Mono.zip(recaptcha, credentials, (passed, step) -> step)
+            .flatMap(step -> blocking(() ->
+                    authenticationService.completeLogin(step.context(), loginRequest, step.authentication()))
+                .onErrorMap(ReactiveAuthenticationService::isLoginFailure,
+                    e -> authenticationService.failLogin(step.context(), (Exception) e)));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        loginScheduler.dispose();
+    }
+    
+    // Shed requests never reached the credential check, so they are not failed attempts
+    private static boolean isLoginFailure(Throwable e) {
+        return e instanceof Exception && !(e instanceof ServiceOverloadedException);
+    }
+    
+    private <T> Mono<T> blocking(Callable<T> step) {
+        return Mono.fromCallable(step)
+            .subscribeOn(loginScheduler)
+            .onErrorMap(RejectedExecutionException.class,
+                e -> new ServiceOverloadedException("Service is busy. Please try again shortly.", 1));
+    }
+    
+    private record LoginStep(LoginContext context, Authentication authentication) {
+    }
+}
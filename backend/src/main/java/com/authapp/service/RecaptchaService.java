@@ -1,47 +1,165 @@
 package com.authapp.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Verifies reCAPTCHA tokens against the siteverify endpoint.
+ *
+ * Calls go through a dedicated, bounded connection pool with connect, response and overall
+ * timeouts, so a slow endpoint costs each login at most the timeout. A double-submitted form joins
+ * the verification still in flight for the same token, username and client IP instead of making a
+ * second call (Google would reject it as a duplicate). Nothing is kept once the call completes, so a
+ * token is never accepted again from memory. When the endpoint cannot be reached, the failure
+ * policy decides: {@code OPEN} lets the login through, {@code CLOSED} rejects it.
+ */
 @Service
 public class RecaptchaService {
     
-    @Value("${app.recaptcha.secret:}")
-    private String recaptchaSecret;
+    public enum FailurePolicy {
+        OPEN,
+        CLOSED
+    }
+    
+    private static final Logger logger = LoggerFactory.getLogger(RecaptchaService.class);
     
-    @Value("${app.recaptcha.enabled:false}")
-    private boolean recaptchaEnabled;
+    private final boolean recaptchaEnabled;
+    private final String recaptchaSecret;
+    private final String verifyUrl;
+    private final Duration timeout;
+    private final FailurePolicy failurePolicy;
+    private final WebClient webClient;
+    private final ConcurrentMap<String, Mono<Boolean>> inFlight = new ConcurrentHashMap<>();
     
-    private final WebClient webClient = WebClient.builder().build();
+    private final Timer successTimer;
+    private final Timer rejectedTimer;
+    private final Timer errorTimer;
+    private final Counter joinedCounter;
     
-    public boolean verify(String recaptchaToken) {
+    public RecaptchaService(MeterRegistry meterRegistry,
+                            @Value("${app.recaptcha.enabled:false}") boolean recaptchaEnabled,
+                            @Value("${app.recaptcha.secret:}") String recaptchaSecret,
+                            @Value("${app.recaptcha.verify-url:https://www.google.com/recaptcha/api/siteverify}") String verifyUrl,
+                            @Value("${app.recaptcha.max-connections:50}") int maxConnections,
+                            @Value("${app.recaptcha.pending-acquire-max:500}") int pendingAcquireMax,
+                            @Value("${app.recaptcha.connect-timeout-ms:1000}") int connectTimeoutMillis,
+                            @Value("${app.recaptcha.timeout-ms:2000}") long timeoutMillis,
+                            @Value("${app.recaptcha.failure-policy:CLOSED}") FailurePolicy failurePolicy) {
+        this.recaptchaEnabled = recaptchaEnabled;
+        this.recaptchaSecret = recaptchaSecret;
+        this.verifyUrl = verifyUrl;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.failurePolicy = failurePolicy;
+        
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("recaptcha")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .pendingAcquireTimeout(timeout)
+                .maxIdleTime(Duration.ofSeconds(30))
+                .evictInBackground(Duration.ofSeconds(60))
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .responseTimeout(timeout);
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        
+        this.successTimer = verifyTimer(meterRegistry, "success");
+        this.rejectedTimer = verifyTimer(meterRegistry, "rejected");
+        this.errorTimer = verifyTimer(meterRegistry, "error");
+        this.joinedCounter = Counter.builder("recaptcha.verify.joined")
+                .description("Logins that joined an in-flight verification of the same token")
+                .register(meterRegistry);
+    }
+    
+    public boolean verify(String recaptchaToken, String username, String ipAddress) {
+        return Boolean.TRUE.equals(verifyAsync(recaptchaToken, username, ipAddress).block());
+    }
+    
+    /**
+     * Non-blocking verification; emits {@code false} rather than an error when the call fails,
+     * unless the failure policy is {@code OPEN}. The call is cancelled once every login waiting on it
+     * has cancelled.
+     */
+    public Mono<Boolean> verifyAsync(String recaptchaToken, String username, String ipAddress) {
         if (!recaptchaEnabled || recaptchaSecret == null || recaptchaSecret.isEmpty()) {
             // If reCAPTCHA is not configured, skip verification
-            return true;
+            return Mono.just(true);
         }
         
         if (recaptchaToken == null || recaptchaToken.isEmpty()) {
-            return false;
+            return Mono.just(false);
         }
         
+        String key = hash(recaptchaToken + '\n' + username + '\n' + ipAddress);
+        Mono<Boolean> pending = inFlight.get(key);
+        if (pending != null) {
+            joinedCounter.increment();
+            return pending;
+        }
+        return inFlight.computeIfAbsent(key, k -> siteverify(recaptchaToken, k));
+    }
+    
+    private Mono<Boolean> siteverify(String recaptchaToken, String key) {
+        long start = System.nanoTime();
+        return webClient.post()
+            .uri(verifyUrl)
+            .body(BodyInserters.fromFormData("secret", recaptchaSecret)
+                .with("response", recaptchaToken))
+            .retrieve()
+            .bodyToMono(Map.class)
+            .timeout(timeout)
+            .map(response -> Boolean.TRUE.equals(response.get("success")))
+            .defaultIfEmpty(false)
+            .doOnNext(success -> record(success ? successTimer : rejectedTimer, start))
+            .onErrorResume(e -> {
+                record(errorTimer, start);
+                logger.warn("reCAPTCHA verification failed, failing {}: {}", failurePolicy, e.toString());
+                return Mono.just(failurePolicy == FailurePolicy.OPEN);
+            })
+            // Removed on completion or once all waiting logins cancel, so the result is never reused
+            .doFinally(signal -> inFlight.remove(key))
+            .share();
+    }
+    
+    private static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    private static Timer verifyTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("recaptcha.verify").tag("outcome", outcome).register(meterRegistry);
+    }
+    
+    private static String hash(String token) {
         try {
-            Map<String, Object> response = webClient.post()
-                .uri("https://www.google.com/recaptcha/api/siteverify")
-                .bodyValue(Map.of(
-                    "secret", recaptchaSecret,
-                    "response", recaptchaToken
-                ))
-                .retrieve()
-                .bodyToMono(Map.class)
-                .block();
-            
-            return response != null && Boolean.TRUE.equals(response.get("success"));
-        } catch (Exception e) {
-            System.err.println("reCAPTCHA verification failed: " + e.getMessage());
-            return false;
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
     }
 }
@@ -0,0 +1,117 @@
+package com.authapp.service;
+
+import com.authapp.dto.TokenRefreshResponse;
+import com.authapp.model.RefreshToken;
+import com.authapp.model.User;
+import com.authapp.repository.RefreshTokenRepository;
+import com.authapp.security.UserPrincipal;
+import com.authapp.security.jwt.JwtUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Issues and rotates opaque refresh tokens.
+ *
+ * Access tokens are short-lived and verified from their claims alone; the user is reloaded from
+ * the database only here, once per refresh. Every refresh consumes the presented token and issues
+ * a new one in the same family. Presenting an already consumed token revokes the whole family.
+ */
+@Service
+public class RefreshTokenService {
+    
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+    
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+    
+    @Autowired
+    private JwtUtils jwtUtils;
+    
+    @Value("${app.jwt.refresh-expiration:604800000}") // 7 days
+    private long refreshExpiration;
+    
+    private final SecureRandom secureRandom = new SecureRandom();
+    
+    @Transactional
+    public String issue(User user) {
+        return issue(user, UUID.randomUUID().toString());
+    }
+    
+    // Writes made before a rejection, such as revoking a family on reuse, must survive it
+    @Transactional(noRollbackFor = RuntimeException.class)
+    public TokenRefreshResponse rotate(String rawToken) {
+        RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(hash(rawToken))
+            .orElseThrow(() -> new RuntimeException("Invalid refresh token"));
+        
+        if (refreshToken.isRevoked() || refreshTokenRepository.markRevoked(refreshToken.getId()) == 0) {
+            refreshTokenRepository.revokeFamily(refreshToken.getFamilyId());
+            throw new RuntimeException("Refresh token reuse detected. Please log in again.");
+        }
+        
+        if (refreshToken.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("Refresh token expired. Please log in again.");
+        }
+        
+        User user = refreshToken.getUser();
+        UserPrincipal principal = (UserPrincipal) userDetailsService.loadUserByUsername(user.getUsername());
+        if (!principal.isAccountNonLocked() || !principal.isEnabled()) {
+            refreshTokenRepository.revokeFamily(refreshToken.getFamilyId());
+            throw new RuntimeException("Account is locked. Please contact administrator.");
+        }
+        
+        String accessToken = jwtUtils.generateTokenFromUsername(principal.getUsername(),
+            principal.getAuthorities(), principal.getTokenVersion());
+        return new TokenRefreshResponse(accessToken, issue(user, refreshToken.getFamilyId()));
+    }
+    
+    @Transactional
+    public void revoke(String rawToken) {
+        refreshTokenRepository.findByTokenHash(hash(rawToken))
+            .ifPresent(refreshToken -> refreshTokenRepository.revokeFamily(refreshToken.getFamilyId()));
+    }
+    
+    @Scheduled(cron = "${app.jwt.refresh-cleanup-cron:0 0 * * * *}")
+    @Transactional
+    public void deleteExpiredTokens() {
+        refreshTokenRepository.deleteExpired(LocalDateTime.now());
+    }
+    
+    private String issue(User user, String familyId) {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setUser(user);
+        refreshToken.setTokenHash(hash(rawToken));
+        refreshToken.setFamilyId(familyId);
+        refreshToken.setExpiresAt(LocalDateTime.now().plus(Duration.ofMillis(refreshExpiration)));
+        refreshTokenRepository.save(refreshToken);
+        
+        return rawToken;
+    }
+    
+    private static String hash(String rawToken) {
+        // Refresh tokens carry 256 bits of entropy, so an unsalted digest is sufficient
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
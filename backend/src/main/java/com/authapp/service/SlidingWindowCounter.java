@@ -0,0 +1,98 @@
+package com.authapp.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-key event counts over a sliding window of whole minutes.
+ *
+ * Each key owns a ring of per-minute buckets. A bucket packs the minute it belongs to together with
+ * its count in one long, so it is claimed and incremented with a single compare-and-set and reads
+ * need no lock. A bucket left over from an earlier lap of the ring is ignored by reads and reset by
+ * the next write. Keys that see no events for a whole window are evicted, and the number of keys is
+ * capped.
+ */
+public class SlidingWindowCounter {
+    
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    
+    private final int windowMinutes;
+    private final Cache<String, AtomicLongArray> windows;
+    
+    public SlidingWindowCounter(int windowMinutes, long maxKeys) {
+        this.windowMinutes = windowMinutes;
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofMinutes(windowMinutes))
+                .build();
+    }
+    
+    public void increment(String key, long epochMinute) {
+        add(key, epochMinute, 1);
+    }
+    
+    /**
+     * Adds events that happened in the given minute; minutes already outside the window are ignored.
+     */
+    public void add(String key, long epochMinute, int events) {
+        if (key == null || events <= 0) {
+            return;
+        }
+        
+        AtomicLongArray buckets = windows.get(key, k -> new AtomicLongArray(windowMinutes));
+        int index = (int) Math.floorMod(epochMinute, (long) windowMinutes);
+        while (true) {
+            long current = buckets.get(index);
+            long bucketMinute = current >>> COUNT_BITS;
+            long updated;
+            if (bucketMinute == epochMinute) {
+                updated = bucketMinute << COUNT_BITS | Math.min(COUNT_MASK, (current & COUNT_MASK) + events);
+            } else if (bucketMinute < epochMinute) {
+                updated = epochMinute << COUNT_BITS | Math.min(COUNT_MASK, events);
+            } else {
+                // The slot already holds a newer minute, so this one has left the window
+                return;
+            }
+            if (current == updated || buckets.compareAndSet(index, current, updated)) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * @return events for the key in the last {@code minutes} minutes, including the current one
+     */
+    public long sum(String key, long currentEpochMinute, int minutes) {
+        AtomicLongArray buckets = key != null ? windows.getIfPresent(key) : null;
+        if (buckets == null) {
+            return 0;
+        }
+        
+        long oldest = currentEpochMinute - Math.min(minutes, windowMinutes) + 1;
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            long bucket = buckets.get(i);
+            long bucketMinute = bucket >>> COUNT_BITS;
+            if (bucketMinute >= oldest && bucketMinute <= currentEpochMinute) {
+                total += bucket & COUNT_MASK;
+            }
+        }
+        return total;
+    }
+    
+    public long sum(String key, long currentEpochMinute) {
+        return sum(key, currentEpochMinute, windowMinutes);
+    }
+    
+    public long estimatedKeys() {
+        return windows.estimatedSize();
+    }
+    
+    public void cleanUp() {
+        windows.cleanUp();
+    }
+}
@@ -2,53 +2,86 @@ package com.authapp.service;
 
 import com.authapp.dto.TwoFactorSetupRequest;
 import com.authapp.dto.TwoFactorSetupResponse;
+import com.authapp.event.UserSecurityChangedEvent;
+import com.authapp.model.BackupCode;
 import com.authapp.model.TwoFactorAuth;
 import com.authapp.model.User;
+import com.authapp.repository.BackupCodeRepository;
 import com.authapp.repository.TwoFactorAuthRepository;
 import com.authapp.repository.UserRepository;
+import com.authapp.security.TotpEngine;
+import com.authapp.security.jwt.TokenVersionRegistry;
 import com.warrenstrange.googleauth.GoogleAuthenticator;
 import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
 import com.warrenstrange.googleauth.GoogleAuthenticatorQRGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * Service for managing two-factor authentication.
  * 
+ * SMS/Email codes are issued and checked by {@link OtpService}; they expire, allow a limited
+ * number of attempts and are rate limited per user.
+ * 
  * IMPORTANT PRODUCTION NOTES:
- * - SMS/Email verification codes are currently accepted without validation for demo purposes
- * - In production, implement proper code storage with expiration timestamps
  * - Remove console logging of verification codes
  * - Integrate with actual SMS provider (e.g., Twilio, AWS SNS)
  * - Configure proper SMTP server for email delivery
- * - Add rate limiting for code generation and verification attempts
- * - Consider implementing code expiration (e.g., 5-10 minutes)
  * 
  * TOTP (authenticator app) method is production-ready and fully secure.
  */
 @Service
 public class TwoFactorAuthService {
     
+    private static final Pattern EIGHT_DIGITS = Pattern.compile("\\d{8}");
+    
     @Autowired
     private TwoFactorAuthRepository twoFactorAuthRepository;
     
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private BackupCodeRepository backupCodeRepository;
+    
+    @Autowired
+    private TotpEngine totpEngine;
+    
+    @Autowired
+    private OtpService otpService;
+    
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+    
+    // Only checks backup codes issued before they were stored as HMACs
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     @Value("${app.name:AuthApp}")
     private String appName;
     
+    @Value("${app.2fa.backup-code-pepper}")
+    private String backupCodePepper;
+    
+    // Only issues secrets; codes are checked by TotpEngine
     private final GoogleAuthenticator googleAuthenticator = new GoogleAuthenticator();
     private final SecureRandom secureRandom = new SecureRandom();
     
@@ -74,6 +107,7 @@ public class TwoFactorAuthService {
                 GoogleAuthenticatorKey key = googleAuthenticator.createCredentials();
                 String secret = key.getKey();
                 twoFactorAuth.setSecret(secret);
+                totpEngine.forget(user.getId());
                 
                 // Generate QR code URL
                 String qrCodeUrl = GoogleAuthenticatorQRGenerator.getOtpAuthURL(
@@ -89,24 +123,28 @@ public class TwoFactorAuthService {
                     throw new RuntimeException("Phone number is required for SMS 2FA");
                 }
                 twoFactorAuth.setPhoneNumber(request.getPhoneNumber());
-                response.setMessage("SMS verification will be sent to " + request.getPhoneNumber());
+                sendSmsCode(request.getPhoneNumber(), otpService.issue(user));
+                response.setMessage("SMS verification code sent to " + request.getPhoneNumber());
                 break;
                 
             case "EMAIL":
-                response.setMessage("Email verification will be sent to " + user.getEmail());
+                sendEmailCode(user.getEmail(), otpService.issue(user));
+                response.setMessage("Email verification code sent to " + user.getEmail());
                 break;
                 
             default:
                 throw new RuntimeException("Unsupported 2FA method: " + request.getMethod());
         }
         
-        // Generate backup codes
+        // Generate backup codes, replacing any earlier ones including legacy BCrypt codes
         List<String> backupCodes = generateBackupCodes();
-        List<String> hashedBackupCodes = new ArrayList<>();
+        List<BackupCode> storedCodes = new ArrayList<>();
         for (String code : backupCodes) {
-            hashedBackupCodes.add(passwordEncoder.encode(code));
+            storedCodes.add(new BackupCode(null, user, hashBackupCode(code), null));
         }
-        twoFactorAuth.setBackupCodes(hashedBackupCodes);
+        twoFactorAuth.getBackupCodes().clear();
+        backupCodeRepository.deleteByUserId(user.getId());
+        backupCodeRepository.saveAll(storedCodes);
         
         twoFactorAuthRepository.save(twoFactorAuth);
         
@@ -132,9 +170,13 @@ public class TwoFactorAuthService {
         twoFactorAuth.setEnabled(true);
         user.setTwoFactorEnabled(true);
         user.setTwoFactorMethod(twoFactorAuth.getMethod());
+        // Stop trusting self-contained tokens issued before the change
+        user.setTokenVersion(user.getTokenVersion() + 1);
         
         twoFactorAuthRepository.save(twoFactorAuth);
         userRepository.save(user);
+        tokenVersionRegistry.bump(username, user.getTokenVersion());
+        eventPublisher.publishEvent(new UserSecurityChangedEvent(username));
     }
     
     @Transactional
@@ -153,63 +195,67 @@ public class TwoFactorAuthService {
         
         user.setTwoFactorEnabled(false);
         user.setTwoFactorMethod(null);
+        user.setTokenVersion(user.getTokenVersion() + 1);
         userRepository.save(user);
+        tokenVersionRegistry.bump(username, user.getTokenVersion());
+        totpEngine.forget(user.getId());
+        otpService.revoke(user);
+        eventPublisher.publishEvent(new UserSecurityChangedEvent(username));
     }
     
+    // Runs in its own transaction, since logins no longer hold one open
+    @Transactional
     public boolean verify(User user, String code, boolean useBackupCode) {
-        TwoFactorAuth twoFactorAuth = twoFactorAuthRepository.findByUser(user)
-            .orElseThrow(() -> new RuntimeException("2FA not setup"));
-        
-        if (!twoFactorAuth.isEnabled()) {
+        if (!user.isTwoFactorEnabled()) {
             // Allow verification during setup
+            TwoFactorAuth twoFactorAuth = loadTwoFactorAuth(user);
             if (twoFactorAuth.getMethod().equalsIgnoreCase("TOTP")) {
-                // Validate code format before parsing
-                if (!code.matches("\\d{6}")) {
-                    return false;
-                }
-                try {
-                    return googleAuthenticator.authorize(twoFactorAuth.getSecret(), Integer.parseInt(code));
-                } catch (NumberFormatException e) {
-                    return false;
-                }
+                return totpEngine.verify(user.getId(), code, twoFactorAuth::getSecret);
             }
-            // For SMS/Email during setup, validate code format
-            return code.matches("\\d{6}");
+            // SMS/Email: the code sent by setup or send-code
+            return otpService.verify(user, code);
         }
         
         if (useBackupCode) {
-            return verifyBackupCode(twoFactorAuth, code);
+            return verifyBackupCode(user, code);
         }
         
-        switch (twoFactorAuth.getMethod().toUpperCase()) {
+        // The method is on the user, so the TOTP path only reads TwoFactorAuth when the key is not cached
+        switch (user.getTwoFactorMethod().toUpperCase()) {
             case "TOTP":
-                // Validate code format before parsing
-                if (!code.matches("\\d{6}")) {
-                    return false;
-                }
-                try {
-                    return googleAuthenticator.authorize(twoFactorAuth.getSecret(), Integer.parseInt(code));
-                } catch (NumberFormatException e) {
-                    return false;
-                }
+                return totpEngine.verify(user.getId(), code, () -> loadTwoFactorAuth(user).getSecret());
             case "SMS":
             case "EMAIL":
-                // NOTE: In production, this should verify against a stored temporary code with expiration
-                // For demo purposes, accepting any 6-digit code
-                // TODO: Implement proper code storage and validation before production use
-                return code.matches("\\d{6}");
+                return otpService.verify(user, code);
             default:
                 return false;
         }
     }
     
-    private boolean verifyBackupCode(TwoFactorAuth twoFactorAuth, String code) {
-        List<String> backupCodes = twoFactorAuth.getBackupCodes();
-        for (int i = 0; i < backupCodes.size(); i++) {
-            if (passwordEncoder.matches(code, backupCodes.get(i))) {
+    private TwoFactorAuth loadTwoFactorAuth(User user) {
+        return twoFactorAuthRepository.findByUser(user)
+            .orElseThrow(() -> new RuntimeException("2FA not setup"));
+    }
+    
+    /**
+     * Checks and consumes a backup code with one keyed hash and one conditional delete. Codes
+     * issued before the switch to HMACs are still held as BCrypt hashes on {@link TwoFactorAuth};
+     * they are scanned only while the user has any left, and go away when codes are regenerated.
+     */
+    private boolean verifyBackupCode(User user, String code) {
+        if (!EIGHT_DIGITS.matcher(code).matches()) {
+            return false;
+        }
+        if (backupCodeRepository.consume(user.getId(), hashBackupCode(code)) > 0) {
+            return true;
+        }
+        
+        TwoFactorAuth twoFactorAuth = loadTwoFactorAuth(user);
+        List<String> legacyCodes = twoFactorAuth.getBackupCodes();
+        for (int i = 0; i < legacyCodes.size(); i++) {
+            if (passwordEncoder.matches(code, legacyCodes.get(i))) {
                 // Remove used backup code
-                backupCodes.remove(i);
-                twoFactorAuth.setBackupCodes(backupCodes);
+                legacyCodes.remove(i);
                 twoFactorAuthRepository.save(twoFactorAuth);
                 return true;
             }
@@ -217,18 +263,26 @@ public class TwoFactorAuthService {
         return false;
     }
     
+    private String hashBackupCode(String code) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(backupCodePepper.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(code.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+    
     public void sendCode(User user) {
         TwoFactorAuth twoFactorAuth = twoFactorAuthRepository.findByUser(user)
             .orElseThrow(() -> new RuntimeException("2FA not setup"));
         
-        String code = generateVerificationCode();
-        
         switch (twoFactorAuth.getMethod().toUpperCase()) {
             case "SMS":
-                sendSmsCode(twoFactorAuth.getPhoneNumber(), code);
+                sendSmsCode(twoFactorAuth.getPhoneNumber(), otpService.issue(user));
                 break;
             case "EMAIL":
-                sendEmailCode(user.getEmail(), code);
+                sendEmailCode(user.getEmail(), otpService.issue(user));
                 break;
             default:
                 throw new RuntimeException("Cannot send code for method: " + twoFactorAuth.getMethod());
@@ -251,10 +305,6 @@ public class TwoFactorAuthService {
         return code.toString();
     }
     
-    private String generateVerificationCode() {
-        return String.format("%06d", secureRandom.nextInt(1000000));
-    }
-    
     private void sendSmsCode(String phoneNumber, String code) {
         // NOTE: In production, integrate with SMS provider like Twilio, AWS SNS, etc.
         // This is for demo/development purposes only
@@ -1,55 +1,132 @@
 package com.authapp.service;
 
-import com.authapp.model.Privilege;
-import com.authapp.model.Role;
+import com.authapp.event.RoleModelChangedEvent;
+import com.authapp.event.UserSecurityChangedEvent;
 import com.authapp.model.User;
 import com.authapp.repository.UserRepository;
+import com.authapp.security.RoleAuthorityRegistry;
+import com.authapp.security.UserPrincipal;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * Loads users for password logins and bearer requests, keeping an immutable {@link UserPrincipal}
+ * per username in a bounded cache. Entries are dropped after the change that affects them commits
+ * (account lock, two-factor change, role or privilege change); the TTL is only a safety net.
+ */
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
     
+    private static final String CACHE_NAME = "users.details";
+    
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private RoleAuthorityRegistry roleAuthorityRegistry;
+    
+    private final AsyncCache<String, UserPrincipal> cache;
+    private final Timer loadTimer;
+    private final TransactionTemplate readOnlyTransaction;
+    
+    public UserDetailsServiceImpl(@Value("${app.security.user-cache.max-size:10000}") long maxSize,
+                                  @Value("${app.security.user-cache.ttl-seconds:300}") long ttlSeconds,
+                                  MeterRegistry meterRegistry,
+                                  PlatformTransactionManager transactionManager) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), CACHE_NAME);
+        this.loadTimer = Timer.builder(CACHE_NAME + ".load")
+                .description("Time to load a user and its authorities from the database")
+                .register(meterRegistry);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+    
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
+        // Only a miss opens a transaction; concurrent misses for one user share a single load.
+        // The load runs on the caller's thread with no map lock held, so a virtual thread waiting
+        // on the database is not pinned to its carrier.
+        CompletableFuture<UserPrincipal> cached = cache.getIfPresent(username);
+        if (cached != null) {
+            return await(cached);
+        }
         
-        return org.springframework.security.core.userdetails.User
-                .withUsername(user.getUsername())
-                .password(user.getPassword())
-                .authorities(getAuthorities(user.getRoles()))
-                .accountLocked(user.isLocked())
-                .disabled(!user.isActive())
-                .build();
+        CompletableFuture<UserPrincipal> loading = new CompletableFuture<>();
+        CompletableFuture<UserPrincipal> existing = cache.asMap().putIfAbsent(username, loading);
+        if (existing != null) {
+            return await(existing);
+        }
+        
+        try {
+            loading.complete(loadFromDatabase(username));
+        } catch (RuntimeException e) {
+            // A failed load is removed from the cache by Caffeine
+            loading.completeExceptionally(e);
+        }
+        return await(loading);
     }
     
-    private Collection<? extends GrantedAuthority> getAuthorities(Set<Role> roles) {
-        List<GrantedAuthority> authorities = new ArrayList<>();
-        
-        for (Role role : roles) {
-            authorities.add(new SimpleGrantedAuthority("ROLE_" + role.getName()));
-            
-            for (Privilege privilege : role.getPrivileges()) {
-                authorities.add(new SimpleGrantedAuthority(privilege.getName()));
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserSecurityChanged(UserSecurityChangedEvent event) {
+        cache.synchronous().invalidate(event.username());
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleModelChanged(RoleModelChangedEvent event) {
+        cache.synchronous().invalidateAll();
+    }
+    
+    private static UserPrincipal await(CompletableFuture<UserPrincipal> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw e;
+        }
+    }
+    
+    private UserPrincipal loadFromDatabase(String username) {
+        Timer.Sample sample = Timer.start();
+        try {
+            return readOnlyTransaction.execute(status -> {
+                User user = userRepository.findByUsername(username)
+                        .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
+                RoleAuthorityRegistry.RoleAuthorities granted = roleAuthorityRegistry.resolve(user.getRoles());
+                
+                return new UserPrincipal(
+                        user.getUsername(),
+                        user.getPassword(),
+                        granted.authorities(),
+                        granted.privilegeMask(),
+                        !user.isLocked(),
+                        user.isActive(),
+                        user.getTokenVersion());
+            });
+        } finally {
+            sample.stop(loadTimer);
         }
-        
-        return authorities;
     }
 }
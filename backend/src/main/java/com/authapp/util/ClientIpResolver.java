@@ -0,0 +1,18 @@
+package com.authapp.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+public final class ClientIpResolver {
+    
+    private ClientIpResolver() {
+    }
+    
+    /**
+     * @return the client address. {@code X-Forwarded-For} is a client-supplied header, so it is only
+     *         honoured when the server rewrites the remote address for trusted proxies
+     *         ({@code server.forward-headers-strategy}, {@code server.tomcat.remoteip.internal-proxies})
+     */
+    public static String resolve(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+}
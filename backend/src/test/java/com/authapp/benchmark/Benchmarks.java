@@ -0,0 +1,55 @@
+package com.authapp.benchmark;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Minimal timing harness for the {@code *Benchmark} classes. They are not picked up by a plain
+ * {@code mvn test}; run them with {@code mvn test -Dtest='*Benchmark'}.
+ *
+ * Each measurement runs the operation once untimed to warm up, then times several rounds and
+ * reports the median, which is less affected by a stray GC pause than the mean. Results are fed to
+ * a sink so the JIT cannot drop the work.
+ */
+public final class Benchmarks {
+    
+    private static final int ROUNDS = 7;
+    
+    private static volatile int sink;
+    
+    private Benchmarks() {
+    }
+    
+    /**
+     * @return median nanoseconds per call of {@code operation}, timed over batches of {@code calls}
+     */
+    public static double nanosPerOp(String name, int calls, Supplier<?> operation) {
+        runBatch(calls, operation);
+        
+        double[] rounds = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            runBatch(calls, operation);
+            rounds[round] = (double) (System.nanoTime() - start) / calls;
+        }
+        Arrays.sort(rounds);
+        
+        double median = rounds[ROUNDS / 2];
+        System.out.printf("%-48s %,14.0f ns/op  (min %,.0f, max %,.0f)%n",
+            name, median, rounds[0], rounds[ROUNDS - 1]);
+        return median;
+    }
+    
+    public static void printRatio(String baseline, double baselineNanos, String candidate, double candidateNanos) {
+        System.out.printf("%s vs %s: %.2fx%n", candidate, baseline, baselineNanos / candidateNanos);
+    }
+    
+    private static void runBatch(int calls, Supplier<?> operation) {
+        int hash = 0;
+        for (int i = 0; i < calls; i++) {
+            Object result = operation.get();
+            hash += result != null ? result.hashCode() : 0;
+        }
+        sink += hash;
+    }
+}
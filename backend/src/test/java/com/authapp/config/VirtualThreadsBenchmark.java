@@ -0,0 +1,76 @@
+package com.authapp.config;
+
+import com.authapp.benchmark.Benchmarks;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A burst of concurrent logins handled by Tomcat's default pool of 200 platform threads, against
+ * one virtual thread per request as with {@code spring.threads.virtual.enabled=true}.
+ *
+ * Each simulated request waits on a remote call (reCAPTCHA, LDAP) and then holds one of 50
+ * database connections for a short query, the same shape as the blocking part of a login. With
+ * platform threads the burst is bounded by the thread count; with virtual threads by the
+ * connection pool.
+ */
+class VirtualThreadsBenchmark {
+    
+    private static final int REQUESTS = 4_000;
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int DATABASE_CONNECTIONS = 50;
+    private static final long REMOTE_CALL_MILLIS = 50;
+    private static final long QUERY_MILLIS = 2;
+    
+    private final Semaphore connections = new Semaphore(DATABASE_CONNECTIONS);
+    
+    @Test
+    void burstOfBlockingRequests() {
+        double platform = Benchmarks.nanosPerOp("Threads: " + REQUESTS + " requests, platform pool of "
+            + TOMCAT_MAX_THREADS, 1, () -> runBurst(() -> Executors.newFixedThreadPool(TOMCAT_MAX_THREADS)));
+        double virtual = Benchmarks.nanosPerOp("Threads: " + REQUESTS + " requests, virtual threads", 1,
+            () -> runBurst(Executors::newVirtualThreadPerTaskExecutor));
+        Benchmarks.printRatio("platform pool", platform, "virtual threads", virtual);
+    }
+    
+    private Integer runBurst(Supplier<ExecutorService> executorFactory) {
+        try (ExecutorService executor = executorFactory.get()) {
+            List<Future<Integer>> responses = new ArrayList<>(REQUESTS);
+            for (int i = 0; i < REQUESTS; i++) {
+                responses.add(executor.submit(this::handleRequest));
+            }
+            int completed = 0;
+            for (Future<Integer> response : responses) {
+                completed += response.get();
+            }
+            assertEquals(REQUESTS, completed);
+            return completed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    private Integer handleRequest() throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(REMOTE_CALL_MILLIS);
+        connections.acquire();
+        try {
+            TimeUnit.MILLISECONDS.sleep(QUERY_MILLIS);
+        } finally {
+            connections.release();
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,40 @@
+package com.authapp.security;
+
+import com.authapp.benchmark.Benchmarks;
+import com.warrenstrange.googleauth.GoogleAuthenticator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TOTP checks through {@code GoogleAuthenticator.authorize}, which decodes the secret and creates a
+ * {@code Mac} per call, against {@link TotpEngine#verify} with its cached key and per-thread
+ * {@code Mac}. A wrong code is timed, since it is the case that tries every step in the window and
+ * the one brute-force attempts hit; a right code is accepted only once per step by the engine.
+ */
+class TotpVerificationBenchmark {
+    
+    private static final int CALLS = 50_000;
+    private static final long USER_ID = 1L;
+    
+    private final GoogleAuthenticator googleAuthenticator = new GoogleAuthenticator();
+    private final TotpEngine totpEngine = new TotpEngine(1, 1_000);
+    
+    @Test
+    void cachedKeyEngineAgainstGoogleAuthenticator() {
+        String secret = googleAuthenticator.createCredentials().getKey();
+        int currentCode = googleAuthenticator.getTotpPassword(secret);
+        String wrongCode = String.format("%06d", (currentCode + 500_000) % 1_000_000);
+        
+        assertTrue(totpEngine.verify(USER_ID, String.format("%06d", currentCode), () -> secret));
+        assertFalse(googleAuthenticator.authorize(secret, Integer.parseInt(wrongCode)));
+        assertFalse(totpEngine.verify(USER_ID, wrongCode, () -> secret));
+        
+        double before = Benchmarks.nanosPerOp("TOTP: GoogleAuthenticator.authorize", CALLS,
+            () -> googleAuthenticator.authorize(secret, Integer.parseInt(wrongCode)));
+        double after = Benchmarks.nanosPerOp("TOTP: TotpEngine.verify", CALLS,
+            () -> totpEngine.verify(USER_ID, wrongCode, () -> secret));
+        Benchmarks.printRatio("GoogleAuthenticator", before, "TotpEngine", after);
+    }
+}
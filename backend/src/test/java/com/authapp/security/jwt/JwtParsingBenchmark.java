@@ -0,0 +1,61 @@
+package com.authapp.security.jwt;
+
+import com.authapp.benchmark.Benchmarks;
+import com.authapp.security.RoleAuthorityRegistry;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Bearer token handling per request, before and after the parser was built once: the old filter
+ * derived the key and built a parser on every call, and parsed each token twice (validate, then
+ * read the subject).
+ */
+class JwtParsingBenchmark {
+    
+    private static final String SECRET = "mySecretKeyForJWTAuthenticationThatIsLongEnoughToMeetRequirements";
+    private static final int CALLS = 20_000;
+    
+    private JwtUtils jwtUtils;
+    private String token;
+    
+    @BeforeEach
+    void setUp() {
+        JwtKeyRing keyRing = new JwtKeyRing(JwtKeyRing.Algorithm.HS256, SECRET, 900_000, "", "");
+        jwtUtils = new JwtUtils(keyRing, mock(RoleAuthorityRegistry.class), 900_000, true);
+        token = jwtUtils.generateTokenFromUsername("alice");
+    }
+    
+    @Test
+    void singleParseWithSharedParser() {
+        assertEquals("alice", perRequestParsers(token));
+        assertEquals("alice", sharedParser(token));
+        
+        double before = Benchmarks.nanosPerOp("JWT: key and parser per call, two parses", CALLS,
+            () -> perRequestParsers(token));
+        double after = Benchmarks.nanosPerOp("JWT: shared parser, parseAndValidate", CALLS,
+            () -> sharedParser(token));
+        Benchmarks.printRatio("per-call parsers", before, "shared parser", after);
+    }
+    
+    private String sharedParser(String bearer) {
+        return jwtUtils.parseAndValidate(bearer).getClaims().getSubject();
+    }
+    
+    // The filter's former validateJwtToken followed by getUsernameFromJwtToken
+    private static String perRequestParsers(String bearer) {
+        Jwts.parser().verifyWith(signingKey()).build().parseSignedClaims(bearer);
+        return Jwts.parser().verifyWith(signingKey()).build().parseSignedClaims(bearer).getPayload().getSubject();
+    }
+    
+    private static SecretKey signingKey() {
+        return Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+    }
+}
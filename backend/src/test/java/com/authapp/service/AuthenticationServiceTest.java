@@ -0,0 +1,218 @@
+package com.authapp.service;
+
+import com.authapp.dto.LoginRequest;
+import com.authapp.dto.LoginResponse;
+import com.authapp.model.User;
+import com.authapp.repository.UserRepository;
+import com.authapp.security.RoleAuthorityRegistry;
+import com.authapp.security.TwoFactorChallengeTokens;
+import com.authapp.security.auth.AuthenticationStrategy;
+import com.authapp.security.jwt.JwtUtils;
+import com.authapp.security.ratelimit.AdaptiveConcurrencyLimiter;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs logins against a stub siteverify endpoint with injected latency, checking that reCAPTCHA and
+ * the credential check overlap and that a failure on either side cancels the other.
+ */
+class AuthenticationServiceTest {
+    
+    private static final long RECAPTCHA_DELAY_MS = 400;
+    private static final long CREDENTIALS_DELAY_MS = 400;
+    
+    private HttpServer siteverify;
+    private ExecutorService siteverifyExecutor;
+    private volatile boolean recaptchaPasses = true;
+    private final AtomicInteger recaptchaCalls = new AtomicInteger();
+    
+    private SimpleMeterRegistry meterRegistry;
+    private AuthenticationService authenticationService;
+    private FraudDetectionService fraudDetectionService;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private AuthenticationStrategy strategy;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        siteverify = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        siteverify.createContext("/siteverify", exchange -> {
+            recaptchaCalls.incrementAndGet();
+            try {
+                Thread.sleep(RECAPTCHA_DELAY_MS);
+                byte[] body = ("{\"success\":" + recaptchaPasses + "}").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // The client gave up on the call
+            } finally {
+                exchange.close();
+            }
+        });
+        siteverifyExecutor = Executors.newCachedThreadPool();
+        siteverify.setExecutor(siteverifyExecutor);
+        siteverify.start();
+        
+        meterRegistry = new SimpleMeterRegistry();
+        RecaptchaService recaptchaService = new RecaptchaService(meterRegistry, true, "test-secret",
+            "http://127.0.0.1:" + siteverify.getAddress().getPort() + "/siteverify",
+            10, 100, 1000, 5000, RecaptchaService.FailurePolicy.CLOSED);
+        
+        User user = new User();
+        user.setUsername("alice");
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user));
+        
+        fraudDetectionService = mock(FraudDetectionService.class);
+        concurrencyLimiter = mock(AdaptiveConcurrencyLimiter.class);
+        
+        strategy = mock(AuthenticationStrategy.class);
+        when(strategy.supports(anyString())).thenReturn(true);
+        when(strategy.authenticate("alice", "secret")).thenAnswer(invocation -> {
+            Thread.sleep(CREDENTIALS_DELAY_MS);
+            return new UsernamePasswordAuthenticationToken("alice", null, List.of());
+        });
+        
+        JwtUtils jwtUtils = mock(JwtUtils.class);
+        when(jwtUtils.generateJwtToken(any(Authentication.class))).thenReturn("jwt");
+        RoleAuthorityRegistry roleAuthorityRegistry = mock(RoleAuthorityRegistry.class);
+        when(roleAuthorityRegistry.resolve(any())).thenReturn(
+            new RoleAuthorityRegistry.RoleAuthorities(Set.of("USER"), Set.of(), List.of(), 0));
+        
+        authenticationService = new AuthenticationService();
+        ReflectionTestUtils.setField(authenticationService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(authenticationService, "fraudDetectionService", fraudDetectionService);
+        ReflectionTestUtils.setField(authenticationService, "authenticationStrategies", List.of(strategy));
+        ReflectionTestUtils.setField(authenticationService, "recaptchaService", recaptchaService);
+        ReflectionTestUtils.setField(authenticationService, "concurrencyLimiter", concurrencyLimiter);
+        ReflectionTestUtils.setField(authenticationService, "twoFactorChallengeTokens", mock(TwoFactorChallengeTokens.class));
+        ReflectionTestUtils.setField(authenticationService, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(authenticationService, "roleAuthorityRegistry", roleAuthorityRegistry);
+        ReflectionTestUtils.setField(authenticationService, "refreshTokenService", mock(RefreshTokenService.class));
+        ReflectionTestUtils.setField(authenticationService, "passwordRehashService", mock(PasswordRehashService.class));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        authenticationService.shutdown();
+        siteverify.stop(0);
+        siteverifyExecutor.shutdownNow();
+    }
+    
+    @Test
+    void loginTakesTheSlowerCheckRatherThanTheSum() {
+        // Warm up the connection pool and class loading outside the measurement
+        authenticationService.authenticate(loginRequest("warm-up"), "10.0.0.1", "test");
+        
+        long start = System.nanoTime();
+        LoginResponse response = authenticationService.authenticate(loginRequest("token"), "10.0.0.1", "test");
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        
+        assertEquals("jwt", response.getToken());
+        long slower = Math.max(RECAPTCHA_DELAY_MS, CREDENTIALS_DELAY_MS);
+        assertTrue(elapsedMillis >= slower, "took " + elapsedMillis + " ms");
+        assertTrue(elapsedMillis < RECAPTCHA_DELAY_MS + CREDENTIALS_DELAY_MS - 150,
+            "took " + elapsedMillis + " ms, close to the sum of both checks");
+    }
+    
+    @Test
+    void failedRecaptchaCancelsQueuedCredentialCheck() throws Exception {
+        recaptchaPasses = false;
+        CountDownLatch interrupted = new CountDownLatch(1);
+        // Holds the credential check in the limiter queue until it is cancelled
+        when(concurrencyLimiter.acquire(anyBoolean())).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return 0L;
+        });
+        
+        RuntimeException e = assertThrows(RuntimeException.class,
+            () -> authenticationService.authenticate(loginRequest("token"), "10.0.0.1", "test"));
+        
+        assertEquals("reCAPTCHA verification failed", e.getMessage());
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "queued credential check was not cancelled");
+        verify(strategy, after(200).never()).authenticate(anyString(), anyString());
+    }
+    
+    @Test
+    void lockedAccountCancelsRecaptchaCall() throws Exception {
+        when(fraudDetectionService.isAccountLocked(any(LoginContext.class))).thenReturn(true);
+        
+        long start = System.nanoTime();
+        RuntimeException e = assertThrows(RuntimeException.class,
+            () -> authenticationService.authenticate(loginRequest("token"), "10.0.0.1", "test"));
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        
+        assertEquals("Account is locked. Please contact administrator.", e.getMessage());
+        assertTrue(elapsedMillis < RECAPTCHA_DELAY_MS, "waited " + elapsedMillis + " ms for reCAPTCHA");
+        assertRecaptchaCallAbandoned();
+    }
+    
+    @Test
+    void suspiciousActivityCancelsRecaptchaCall() throws Exception {
+        when(fraudDetectionService.isSuspiciousActivity(any(LoginContext.class))).thenReturn(true);
+        
+        RuntimeException e = assertThrows(RuntimeException.class,
+            () -> authenticationService.authenticate(loginRequest("token"), "10.0.0.1", "test"));
+        
+        assertEquals("Account temporarily locked due to suspicious activity", e.getMessage());
+        assertRecaptchaCallAbandoned();
+    }
+    
+    // A cancelled call records no outcome, even once the stub answers
+    private void assertRecaptchaCallAbandoned() throws InterruptedException {
+        Thread.sleep(RECAPTCHA_DELAY_MS + 200);
+        assertTrue(recaptchaCalls.get() <= 1);
+        meterRegistry.find("recaptcha.verify").timers()
+            .forEach(timer -> assertEquals(0, timer.count(), "outcome " + timer.getId().getTag("outcome")));
+        verify(strategy, never()).authenticate(anyString(), anyString());
+    }
+    
+    private static LoginRequest loginRequest(String recaptchaToken) {
+        LoginRequest request = new LoginRequest();
+        request.setUsername("alice");
+        request.setPassword("secret");
+        request.setRecaptchaToken(recaptchaToken);
+        return request;
+    }
+}
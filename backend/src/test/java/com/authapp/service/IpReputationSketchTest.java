@@ -0,0 +1,124 @@
+package com.authapp.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IpReputationSketchTest {
+    
+    private static final int WIDTH = 1024;
+    private static final int DEPTH = 4;
+    private static final int TOP_K = 20;
+    private static final int FAILURES = 200_000;
+    private static final long MINUTE = 5;
+    
+    private IpReputationSketch sketch;
+    private Map<String, Integer> trueCounts;
+    
+    @BeforeEach
+    void recordSkewedStream() {
+        sketch = new IpReputationSketch(60, 6, WIDTH, DEPTH, TOP_K);
+        trueCounts = new HashMap<>();
+        
+        // Power-law over 50,000 addresses: a few take most of the failures, most are seen once or twice
+        Random random = new Random(42);
+        for (int i = 0; i < FAILURES; i++) {
+            String ipAddress = ipAddress((int) (Math.pow(random.nextDouble(), 4) * 50_000));
+            trueCounts.merge(ipAddress, 1, Integer::sum);
+            sketch.recordFailure(ipAddress, MINUTE);
+        }
+    }
+    
+    @Test
+    void neverUndercounts() {
+        trueCounts.forEach((ipAddress, count) ->
+            assertTrue(sketch.estimateFailures(ipAddress, MINUTE) >= count, ipAddress));
+    }
+    
+    @Test
+    void overestimateStaysWithinBoundAtStatedConfidence() {
+        double bound = Math.E / WIDTH * FAILURES;
+        long outside = trueCounts.entrySet().stream()
+            .filter(entry -> sketch.estimateFailures(entry.getKey(), MINUTE) - entry.getValue() > bound)
+            .count();
+        
+        double allowed = Math.exp(-DEPTH) * trueCounts.size();
+        assertTrue(outside <= allowed, outside + " of " + trueCounts.size() + " estimates off by more than " + bound);
+    }
+    
+    @Test
+    void topOffendersRecallTheHeaviestAddresses() {
+        List<String> trueTop = trueCounts.entrySet().stream()
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+            .limit(10)
+            .map(Map.Entry::getKey)
+            .toList();
+        
+        List<IpReputationSketch.IpFailureCount> reported = sketch.topOffenders(MINUTE, TOP_K);
+        List<String> reportedAddresses = reported.stream()
+            .map(IpReputationSketch.IpFailureCount::ipAddress)
+            .toList();
+        
+        assertTrue(reportedAddresses.containsAll(trueTop), "missing heavy hitters: " + trueTop + " in " + reportedAddresses);
+        for (int i = 1; i < reported.size(); i++) {
+            assertTrue(reported.get(i - 1).estimatedFailures() >= reported.get(i).estimatedFailures());
+        }
+    }
+    
+    @Test
+    void addressesWithoutFailuresStayBelowRiskThresholdUnderLoad() {
+        // The global limit of 6,000 failures a minute, spread over 100,000 addresses for a full window
+        IpReputationSketch loaded = new IpReputationSketch(60, 6, 65_536, DEPTH, TOP_K);
+        Random random = new Random(7);
+        for (int minute = 0; minute < 60; minute++) {
+            for (int i = 0; i < 6_000; i++) {
+                loaded.recordFailure(ipAddress(random.nextInt(100_000)), minute);
+            }
+        }
+        
+        long total = 0;
+        for (int i = 0; i < 1_000; i++) {
+            long estimate = loaded.estimateFailures("192.168." + (i >>> 8) + "." + (i & 0xFF), 59);
+            assertTrue(estimate < 10, "address without failures estimated at " + estimate);
+            total += estimate;
+        }
+        assertTrue(total / 1_000.0 < 1, "mean estimate " + total / 1_000.0);
+    }
+    
+    @Test
+    void concurrentUpdatesOfOneAddressAreNotLost() throws InterruptedException {
+        IpReputationSketch shared = new IpReputationSketch(60, 6, WIDTH, DEPTH, TOP_K);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    shared.recordFailure("203.0.113.7", MINUTE);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertTrue(shared.estimateFailures("203.0.113.7", MINUTE) >= 80_000);
+    }
+    
+    @Test
+    void forgetsPanesOutsideTheWindow() {
+        assertEquals(0, sketch.estimateFailures(ipAddress(0), MINUTE + 60));
+        assertTrue(sketch.topOffenders(MINUTE + 60, TOP_K).isEmpty());
+    }
+    
+    private static String ipAddress(int n) {
+        return "10." + (n >>> 16) + "." + ((n >>> 8) & 0xFF) + "." + (n & 0xFF);
+    }
+}
@@ -45,7 +45,7 @@ export class LoginComponent {
           // Show 2FA input
           this.twoFactorRequired = true;
           this.twoFactorMethod = response.twoFactorMethod || '';
-          this.savedLoginRequest = { ...this.loginRequest };
+          this.savedLoginRequest = { ...this.loginRequest, twoFactorChallenge: response.twoFactorChallenge };
           
           // If method is SMS or EMAIL, code has been sent
           if (this.twoFactorMethod === 'SMS' || this.twoFactorMethod === 'EMAIL') {
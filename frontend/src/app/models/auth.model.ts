@@ -3,11 +3,13 @@ export interface LoginRequest {
   password: string;
   authMethod: string;
   twoFactorCode?: string;
+  twoFactorChallenge?: string;
   recaptchaToken?: string;
 }
 
 export interface LoginResponse {
   token: string;
+  refreshToken?: string;
   type: string;
   username: string;
   email: string;
@@ -16,6 +18,13 @@ export interface LoginResponse {
   authMethod: string;
   twoFactorRequired?: boolean;
   twoFactorMethod?: string;
+  twoFactorChallenge?: string;
+}
+
+export interface TokenRefreshResponse {
+  token: string;
+  refreshToken: string;
+  type: string;
 }
 
 export interface RegisterRequest {
@@ -1,7 +1,7 @@
 import { Injectable } from '@angular/core';
 import { HttpInterceptor, HttpRequest, HttpHandler, HttpEvent, HttpErrorResponse } from '@angular/common/http';
 import { Observable, throwError } from 'rxjs';
-import { catchError } from 'rxjs/operators';
+import { catchError, switchMap } from 'rxjs/operators';
 import { AuthService } from './auth.service';
 import { Router } from '@angular/router';
 
@@ -13,21 +13,36 @@ export class AuthInterceptor implements HttpInterceptor {
     const token = this.authService.getToken();
     
     if (token) {
-      request = request.clone({
-        setHeaders: {
-          Authorization: `Bearer ${token}`
-        }
-      });
+      request = this.withToken(request, token);
     }
 
     return next.handle(request).pipe(
       catchError((error: HttpErrorResponse) => {
+        // Access tokens are short-lived: renew once with the refresh token and retry
+        if (error.status === 401 && this.authService.getRefreshToken() && !request.url.endsWith('/auth/refresh')) {
+          return this.authService.refreshToken().pipe(
+            switchMap(response => next.handle(this.withToken(request, response.token))),
+            catchError((refreshError: HttpErrorResponse) => {
+              this.authService.clearSession();
+              this.router.navigate(['/login']);
+              return throwError(() => refreshError);
+            })
+          );
+        }
         if (error.status === 401) {
-          this.authService.logout();
+          this.authService.clearSession();
           this.router.navigate(['/login']);
         }
         return throwError(() => error);
       })
     );
   }
+
+  private withToken(request: HttpRequest<any>, token: string): HttpRequest<any> {
+    return request.clone({
+      setHeaders: {
+        Authorization: `Bearer ${token}`
+      }
+    });
+  }
 }
@@ -1,10 +1,11 @@
 import { Injectable } from '@angular/core';
 import { HttpClient, HttpHeaders } from '@angular/common/http';
 import { Observable, BehaviorSubject } from 'rxjs';
-import { tap } from 'rxjs/operators';
-import { LoginRequest, LoginResponse, RegisterRequest, User, TwoFactorSetupRequest, TwoFactorSetupResponse, TwoFactorEnableRequest } from '../models/auth.model';
+import { finalize, shareReplay, tap } from 'rxjs/operators';
+import { LoginRequest, LoginResponse, RegisterRequest, User, TwoFactorSetupRequest, TwoFactorSetupResponse, TwoFactorEnableRequest, TokenRefreshResponse } from '../models/auth.model';
 
 const TOKEN_KEY = 'auth-token';
+const REFRESH_TOKEN_KEY = 'auth-refresh-token';
 const USER_KEY = 'auth-user';
 
 @Injectable({
@@ -14,6 +15,7 @@ export class AuthService {
   private apiUrl = 'http://localhost:8080/api/auth';
   private currentUserSubject: BehaviorSubject<User | null>;
   public currentUser: Observable<User | null>;
+  private refreshInFlight: Observable<TokenRefreshResponse> | null = null;
 
   constructor(private http: HttpClient) {
     this.currentUserSubject = new BehaviorSubject<User | null>(this.getUserFromStorage());
@@ -27,6 +29,9 @@ export class AuthService {
           // Only save token if 2FA is not required
           if (response.token && !response.twoFactorRequired) {
             this.saveToken(response.token);
+            if (response.refreshToken) {
+              this.saveRefreshToken(response.refreshToken);
+            }
             const user: User = {
               id: 0,
               username: response.username,
@@ -47,10 +52,34 @@ export class AuthService {
   }
 
   logout(): Observable<any> {
+    // The request still carries the token so the server can revoke it; clear it locally afterwards
+    return this.http.post(`${this.apiUrl}/logout`, { refreshToken: this.getRefreshToken() }).pipe(
+      finalize(() => this.clearSession())
+    );
+  }
+
+  refreshToken(): Observable<TokenRefreshResponse> {
+    // Refresh tokens are single-use, so concurrent callers must share one rotation
+    if (!this.refreshInFlight) {
+      this.refreshInFlight = this.http.post<TokenRefreshResponse>(`${this.apiUrl}/refresh`, {
+        refreshToken: this.getRefreshToken()
+      }).pipe(
+        tap(response => {
+          this.saveToken(response.token);
+          this.saveRefreshToken(response.refreshToken);
+        }),
+        finalize(() => this.refreshInFlight = null),
+        shareReplay(1)
+      );
+    }
+    return this.refreshInFlight;
+  }
+
+  clearSession(): void {
     this.removeToken();
+    this.removeRefreshToken();
     this.removeUser();
     this.currentUserSubject.next(null);
-    return this.http.post(`${this.apiUrl}/logout`, {});
   }
 
   // 2FA methods
@@ -91,6 +120,18 @@ export class AuthService {
     window.sessionStorage.removeItem(TOKEN_KEY);
   }
 
+  getRefreshToken(): string | null {
+    return window.sessionStorage.getItem(REFRESH_TOKEN_KEY);
+  }
+
+  private saveRefreshToken(refreshToken: string): void {
+    window.sessionStorage.setItem(REFRESH_TOKEN_KEY, refreshToken);
+  }
+
+  private removeRefreshToken(): void {
+    window.sessionStorage.removeItem(REFRESH_TOKEN_KEY);
+  }
+
   private saveUser(user: User): void {
     window.sessionStorage.removeItem(USER_KEY);
     window.sessionStorage.setItem(USER_KEY, JSON.stringify(user));